@@ -0,0 +1,85 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.Random;
+
+public class AccountLookupBenchmark {
+
+    private static final int[] ACCOUNT_COUNTS = {1_000, 10_000, 100_000};
+    private static final int LOOKUPS = 2_000_000;
+    private static final int RECIPIENTS = 50;
+    private static final int SENDS = 2_000;
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %18s %18s %18s%n", "accounts", "byName (ns/op)", "byEmail (ns/op)",
+                "sendMail x" + RECIPIENTS + " (us/op)");
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            run(ACCOUNT_COUNTS[0], false);
+        }
+        for (int accountCount : ACCOUNT_COUNTS) {
+            run(accountCount, true);
+        }
+    }
+
+    private static void run(int accountCount, boolean print) {
+        Outlook outlook = new Outlook();
+        AccountRegistry registry = new AccountRegistry();
+        for (int i = 0; i < accountCount; i++) {
+            outlook.addNewAccount(name(i), email(i));
+            registry.register(name(i), email(i));
+        }
+
+        Random random = new Random(accountCount);
+        String[] names = new String[LOOKUPS];
+        String[] emails = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            int idx = random.nextInt(accountCount);
+            names[i] = name(idx);
+            emails[i] = email(idx);
+        }
+
+        long found = 0;
+        long start = System.nanoTime();
+        for (String name : names) {
+            found += registry.getByName(name) == null ? 0 : 1;
+        }
+        double byName = (double) (System.nanoTime() - start) / LOOKUPS;
+
+        start = System.nanoTime();
+        for (String email : emails) {
+            found += registry.containsEmail(email) ? 1 : 0;
+        }
+        double byEmail = (double) (System.nanoTime() - start) / LOOKUPS;
+
+        String body = "Quarterly all-hands announcement";
+        start = System.nanoTime();
+        for (int i = 0; i < SENDS; i++) {
+            outlook.sendMail(name(0), metadata(random, accountCount), body);
+        }
+        double send = (double) (System.nanoTime() - start) / SENDS / 1_000;
+
+        if (print) {
+            System.out.printf("%10d %18.1f %18.1f %18.1f   (%d hits)%n", accountCount, byName, byEmail, send, found);
+        }
+    }
+
+    private static String metadata(Random random, int accountCount) {
+        StringBuilder recipients = new StringBuilder();
+        for (int i = 0; i < RECIPIENTS; i++) {
+            recipients.append(email(random.nextInt(accountCount))).append(", ");
+        }
+
+        return "subject: All hands" + System.lineSeparator() +
+                "recipients: " + recipients + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+    }
+
+    private static String name(int i) {
+        return "user" + i;
+    }
+
+    private static String email(int i) {
+        return "user" + i + "@corp.bg";
+    }
+}
@@ -0,0 +1,66 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Memory report for a newsletter-heavy corpus: every account receives the same newsletters, each one read as
+// its own String the way a network read would produce it, plus a few personal mails with unique bodies.
+public class BodyStoreMemoryReport {
+
+    private static final int ACCOUNTS = 2_000;
+    private static final int NEWSLETTERS = 20;
+    private static final int PERSONAL_MAILS = 5;
+    private static final int NEWSLETTER_LENGTH = 4_000;
+    private static final String METADATA = "sender: news@fmi.bg" + System.lineSeparator() +
+            "subject: Weekly digest" + System.lineSeparator() +
+            "recipients: students@fmi.bg" + System.lineSeparator() +
+            "received: 2022-12-08 14:14";
+
+    public static void main(String[] args) {
+        List<String> newsletters = new ArrayList<>();
+        for (int i = 0; i < NEWSLETTERS; i++) {
+            newsletters.add(("Newsletter " + i + ": MJT course is the best course in FMI! ").repeat(
+                    NEWSLETTER_LENGTH / 50));
+        }
+
+        long withoutStore = measure(new MailMetadataParser(new AccountRegistry()), newsletters);
+        BodyStore store = new BodyStore();
+        long withStore = measure(new MailMetadataParser(new AccountRegistry(), store), newsletters);
+
+        int mails = ACCOUNTS * (NEWSLETTERS + PERSONAL_MAILS);
+        System.out.printf("%12s %16s %16s%n", "store", "heap MB", "bytes/mail");
+        System.out.printf("%12s %16.1f %16.1f%n", "none", withoutStore / 1e6, (double) withoutStore / mails);
+        System.out.printf("%12s %16.1f %16.1f%n", "body store", withStore / 1e6, (double) withStore / mails);
+        System.out.printf("saved %.1f MB (%.0f%%), %s%n", (withoutStore - withStore) / 1e6,
+                100.0 * (withoutStore - withStore) / withoutStore, store.getStats());
+    }
+
+    private static long measure(MailMetadataParser parser, List<String> newsletters) {
+        long before = usedHeap();
+        List<Mail> corpus = new ArrayList<>(ACCOUNTS * (NEWSLETTERS + PERSONAL_MAILS));
+        for (int account = 0; account < ACCOUNTS; account++) {
+            for (String newsletter : newsletters) {
+                corpus.add(parser.parse(METADATA, new String(newsletter.toCharArray())));
+            }
+            for (int i = 0; i < PERSONAL_MAILS; i++) {
+                corpus.add(parser.parse(METADATA, "Personal mail " + i + " for account " + account));
+            }
+        }
+
+        long used = usedHeap() - before;
+        if (corpus.size() != ACCOUNTS * (NEWSLETTERS + PERSONAL_MAILS)) {
+            throw new IllegalStateException("Unexpected corpus size");
+        }
+
+        return used;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
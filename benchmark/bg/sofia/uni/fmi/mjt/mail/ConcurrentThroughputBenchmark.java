@@ -0,0 +1,74 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentThroughputBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+    private static final int ACCOUNTS = 1_000;
+    private static final int OPERATIONS_PER_THREAD = 200_000;
+    private static final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("cores: %d%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %16s%n", "threads", "ops/s");
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            run(THREAD_COUNTS[THREAD_COUNTS.length - 1], false);
+        }
+        for (int threads : THREAD_COUNTS) {
+            run(threads, true);
+        }
+    }
+
+    // Each thread receives into random accounts, sends one mail in ten and reads a folder one time in five.
+    private static void run(int threads, boolean print) throws Exception {
+        Outlook outlook = new Outlook();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            outlook.addNewAccount("user" + i, "user" + i + "@corp.bg");
+            outlook.createFolder("user" + i, "/inbox/news");
+            outlook.addRule("user" + i, "/inbox/news", "subject-includes: news", 3);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    String account = "user" + (seed * 7919 + i * 31) % ACCOUNTS;
+                    if (i % 10 == 0) {
+                        String to = "user" + (i % ACCOUNTS) + "@corp.bg, user" + ((i + 1) % ACCOUNTS) + "@corp.bg";
+                        outlook.sendMail(account, "subject: news " + i + System.lineSeparator() + "recipients: " + to,
+                                "body");
+                    } else if (i % 5 == 0) {
+                        outlook.getMailsFromFolder(account, "/inbox/news").size();
+                    } else {
+                        outlook.receiveMail(account, "sender: x@y.bg" + System.lineSeparator() + "subject: hi " + i,
+                                "body");
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        if (print) {
+            System.out.printf("%8d %16.0f%n", threads, (double) threads * OPERATIONS_PER_THREAD / (elapsed / 1e9));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// An account with 10k folders: finding a folder, counting the mails below one project and moving that project
+// to another parent in the folder tree, against a flat path-keyed map where subtree operations scan every key.
+public class FolderTreeBenchmark {
+
+    private static final int PROJECTS = 2_000;
+    private static final String[] SUBFOLDERS = {"docs", "reports", "drafts", "archive"};
+    private static final int LOOKUPS = 1_000_000;
+    private static final int SUBTREE_OPERATIONS = 2_000;
+
+    public static void main(String[] args) {
+        Inbox inbox = new Inbox();
+        Map<String, Folder> flat = new HashMap<>();
+        List<String> paths = new ArrayList<>();
+        inbox.createFolder("/inbox/archive");
+        for (int i = 0; i < PROJECTS; i++) {
+            String project = "/inbox/project" + i;
+            inbox.createFolder(project);
+            paths.add(project);
+            for (String subfolder : SUBFOLDERS) {
+                inbox.createFolder(project + "/" + subfolder);
+                paths.add(project + "/" + subfolder);
+            }
+        }
+        for (String path : paths) {
+            flat.put(path, new Folder());
+        }
+
+        long treeLookupNanos = 0;
+        long flatLookupNanos = 0;
+        long treeSubtreeNanos = 0;
+        long flatSubtreeNanos = 0;
+        long sink = 0;
+        for (int round = 0; round < 2; round++) {      // The first round is warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sink += inbox.checkIfFolderExists(paths.get(i % paths.size())) ? 1 : 0;
+            }
+            treeLookupNanos = (System.nanoTime() - start) / LOOKUPS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sink += flat.containsKey(paths.get(i % paths.size())) ? 1 : 0;
+            }
+            flatLookupNanos = (System.nanoTime() - start) / LOOKUPS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SUBTREE_OPERATIONS; i++) {
+                String project = "/inbox/project" + i % PROJECTS;
+                sink += inbox.countMails(project);
+                inbox.moveFolder(project, "/inbox/archive");
+                inbox.moveFolder("/inbox/archive/project" + i % PROJECTS, "/inbox");
+            }
+            treeSubtreeNanos = (System.nanoTime() - start) / SUBTREE_OPERATIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SUBTREE_OPERATIONS; i++) {
+                String project = "/inbox/project" + i % PROJECTS;
+                sink += countFlat(flat, project);
+                moveFlat(flat, project, "/inbox/archive/project" + i % PROJECTS);
+                moveFlat(flat, "/inbox/archive/project" + i % PROJECTS, project);
+            }
+            flatSubtreeNanos = (System.nanoTime() - start) / SUBTREE_OPERATIONS;
+        }
+
+        System.out.printf("%10s %14s %20s%n", "layout", "ns/lookup", "us/count+2 moves");
+        System.out.printf("%10s %14d %20.2f%n", "tree", treeLookupNanos, treeSubtreeNanos / 1e3);
+        System.out.printf("%10s %14d %20.2f   (%d)%n", "flat map", flatLookupNanos, flatSubtreeNanos / 1e3, sink);
+    }
+
+    private static int countFlat(Map<String, Folder> flat, String path) {
+        int count = 0;
+        for (Map.Entry<String, Folder> entry : flat.entrySet()) {
+            if (entry.getKey().equals(path) || entry.getKey().startsWith(path + "/")) {
+                count += entry.getValue().size();
+            }
+        }
+
+        return count;
+    }
+
+    private static void moveFlat(Map<String, Folder> flat, String path, String newPath) {
+        List<String> moved = new ArrayList<>();
+        for (String key : flat.keySet()) {
+            if (key.equals(path) || key.startsWith(path + "/")) {
+                moved.add(key);
+            }
+        }
+        for (String key : moved) {
+            flat.put(newPath + key.substring(path.length()), flat.remove(key));
+        }
+    }
+}
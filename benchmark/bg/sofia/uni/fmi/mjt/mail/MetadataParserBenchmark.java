@@ -0,0 +1,97 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+
+public class MetadataParserBenchmark {
+
+    private static final int ITERATIONS = 1_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final String METADATA = "sender: niki@abv.bg" + System.lineSeparator() +
+            "subject: Hello, MJT!" + System.lineSeparator() +
+            "recipients: pesho@gmail.com, gosho@gmail.com, ivan@abv.bg, stoyo@fmi.bg" + System.lineSeparator() +
+            "received: 2022-12-08 14:14";
+    private static final String BODY = "MJT course is the best course in FMI!";
+
+    public static void main(String[] args) {
+        AccountRegistry accounts = new AccountRegistry();
+        accounts.register("Nikolay", "niki@abv.bg");
+        MailMetadataParser parser = new MailMetadataParser(accounts);
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            measure("legacy", () -> parseLegacy(accounts, METADATA, BODY), false);
+            measure("single-pass", () -> parser.parse(METADATA, BODY), false);
+        }
+
+        System.out.printf("%12s %16s %16s%n", "parser", "mails/s", "bytes/mail");
+        measure("legacy", () -> parseLegacy(accounts, METADATA, BODY), true);
+        measure("single-pass", () -> parser.parse(METADATA, BODY), true);
+    }
+
+    private static void measure(String name, ParserCall call, boolean print) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        int sink = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += call.parse().recipients().size();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        if (print) {
+            System.out.printf("%12s %16.0f %16.1f   (%d)%n", name, ITERATIONS / (elapsed / 1e9),
+                    (double) allocated / ITERATIONS, sink);
+        }
+    }
+
+    // The regex based implementation Outlook used before MailMetadataParser, kept as the baseline.
+    private static Mail parseLegacy(AccountRegistry accounts, String mailMetadata, String mailBody) {
+        String[] words = mailMetadata.strip().split("[:\\r?\\n|\\r]+");
+        String senderMail = "";
+        String senderName = "";
+        String subject = "";
+        Set<String> rec = new HashSet<>();
+        LocalDateTime dateTime = null;
+
+        for (int i = 0; i < words.length; i++) {
+            switch (words[i]) {
+                case "sender" -> {
+                    i++;
+                    senderMail = words[i].strip();
+                    Account account = accounts.getByEmail(senderMail);
+                    senderName = account == null ? null : account.name();
+                }
+                case "subject" -> {
+                    i++;
+                    subject = words[i].strip();
+                }
+                case "recipients" -> {
+                    i++;
+                    for (String currRecipient : words[i].strip().split(",")) {
+                        rec.add(currRecipient.strip());
+                    }
+                }
+                case "received" -> {
+                    i++;
+                    String first = words[i].strip();
+                    i++;
+                    String sec = words[i].strip();
+                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+                    dateTime = LocalDateTime.parse(first + ":" + sec, formatter);
+                }
+            }
+        }
+
+        return new Mail(new Account(senderMail, senderName), rec, subject, mailBody, dateTime);
+    }
+
+    private interface ParserCall {
+        Mail parse();
+    }
+}
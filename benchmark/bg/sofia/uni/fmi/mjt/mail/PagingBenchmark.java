@@ -0,0 +1,47 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Showing one 50-row page of a 500k-mail folder: resuming from a page token against copying the whole folder
+// and cutting the window out of the copy.
+public class PagingBenchmark {
+
+    private static final int FOLDER_SIZE = 500_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int PAGES = 2_000;
+    private static final int COPIES = 50;
+
+    public static void main(String[] args) {
+        Folder folder = new Folder();
+        for (int i = 0; i < FOLDER_SIZE; i++) {
+            folder.add(new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of(), "MJT " + i, "body",
+                    LocalDateTime.of(2022, 12, 8, 14, 14)));
+        }
+        String middleToken = folder.getPage(null, FOLDER_SIZE / 2).nextPageToken();
+
+        long pageNanos = 0;
+        long copyNanos = 0;
+        int sink = 0;
+        for (int round = 0; round < 2; round++) {      // The first round is warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < PAGES; i++) {
+                sink += folder.getPage(middleToken, PAGE_SIZE).mails().size();
+            }
+            pageNanos = (System.nanoTime() - start) / PAGES;
+
+            start = System.nanoTime();
+            for (int i = 0; i < COPIES; i++) {
+                List<Mail> copy = new ArrayList<>(folder.getMails());
+                sink += copy.subList(FOLDER_SIZE / 2, FOLDER_SIZE / 2 + PAGE_SIZE).size();
+            }
+            copyNanos = (System.nanoTime() - start) / COPIES;
+        }
+
+        System.out.printf("%12s %14s%n", "read", "us/page");
+        System.out.printf("%12s %14.2f%n", "token page", pageNanos / 1e3);
+        System.out.printf("%12s %14.2f   (%d)%n", "full copy", copyNanos / 1e3, sink);
+    }
+}
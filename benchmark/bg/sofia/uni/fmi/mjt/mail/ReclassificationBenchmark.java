@@ -0,0 +1,51 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+public class ReclassificationBenchmark {
+
+    private static final int[] INBOX_SIZES = {100_000, 1_000_000, 3_000_000};
+    private static final int RULES = 50;
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        System.out.printf("cores: %d%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%10s %22s%n", "inbox", "reclassify (ms)");
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            run(INBOX_SIZES[0], false);
+        }
+        for (int size : INBOX_SIZES) {
+            run(size, true);
+        }
+    }
+
+    private static void run(int inboxSize, boolean print) {
+        Inbox inbox = new Inbox();
+        AccountRules rules = new AccountRules();
+        for (int i = 0; i < RULES; i++) {
+            inbox.createFolder("/inbox/f" + i);
+            Rule rule = new Rule("/inbox/f" + i, 1 + i % 10);
+            rule.parseRuleDefinition("subject-includes: topic" + i + "x" + System.lineSeparator() +
+                    "subject-or-body-includes: keyword" + i);
+            rules.addRule(rule);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < inboxSize; i++) {
+            inbox.putMailInFolder("/inbox", new Mail(new Account("sender" + i % 100 + "@corp.bg", "s"),
+                    Set.of("me@corp.bg"), "subject topic" + i % 1000 + "x", "some body with keyword" + i % 200,
+                    now));
+        }
+
+        long start = System.nanoTime();
+        inbox.checkForBetterFolders(rules);
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+
+        if (print) {
+            System.out.printf("%10d %22.1f   (%d left in /inbox)%n", inboxSize, millis,
+                    inbox.getMailsFromFolder("/inbox").size());
+        }
+    }
+}
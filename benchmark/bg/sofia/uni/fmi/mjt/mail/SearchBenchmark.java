@@ -0,0 +1,58 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Set;
+
+// Query latency of the inverted index against filtering the whole folder on the client, for growing
+// mailboxes. The query combines a common word with a rare one, so the index result stays small.
+public class SearchBenchmark {
+
+    private static final int[] MAILBOX_SIZES = {10_000, 100_000, 1_000_000};
+    private static final int QUERIES = 200;
+    private static final int FILTER_QUERIES = 10;
+    private static final Account SENDER = new Account("niki@abv.bg", "Nikolay");
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %16s %16s %10s%n", "mails", "index us/query", "filter us/query", "hits");
+        for (int size : MAILBOX_SIZES) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        Inbox inbox = new Inbox();
+        for (int i = 0; i < size; i++) {
+            String subject = "MJT lecture " + (i % 500);
+            String body = "Weekly notes about streams and lambdas, topic" + (i % 997);
+            inbox.putMailInFolder("/inbox", new Mail(SENDER, Set.of("ivan@abv.bg"), subject, body,
+                    LocalDateTime.of(2022, 1, 1, 0, 0).plusMinutes(i)));
+        }
+        SearchQuery query = SearchQuery.ofTerms("streams", "topic42");
+
+        int hits = 0;
+        long indexNanos = 0;
+        long filterNanos = 0;
+        for (int round = 0; round < 2; round++) {          // The first round is warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                hits = inbox.search(query).size();
+            }
+            indexNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < FILTER_QUERIES; i++) {
+                hits = (int) inbox.getMailsFromFolder("/inbox").stream().filter(SearchBenchmark::matches).count();
+            }
+            filterNanos = System.nanoTime() - start;
+        }
+
+        System.out.printf("%10d %16.1f %16.1f %10d%n", size, indexNanos / 1e3 / QUERIES,
+                filterNanos / 1e3 / FILTER_QUERIES, hits);
+    }
+
+    private static boolean matches(Mail mail) {
+        String text = (mail.subject() + " " + mail.body()).toLowerCase(Locale.ROOT) + " ";
+        return text.contains("streams") && text.contains(" topic42 ");
+    }
+}
@@ -0,0 +1,75 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.storage.FsyncPolicy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Startup time of a durable client: replaying the full log against loading a snapshot. The mail count is the
+// first argument (default 1M; 10M needs a heap of several GB).
+public class StartupBenchmark {
+
+    private static final int ACCOUNTS = 1_000;
+    private static final int BATCH = 1_000;
+    private static final int DISTINCT_BODIES = 50_000;
+
+    public static void main(String[] args) throws IOException {
+        int mails = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = Files.createTempDirectory("outlook-startup").resolve("outlook.log");
+
+        try (Outlook outlook = new Outlook(file, FsyncPolicy.NONE)) {
+            populate(outlook, mails);
+        }
+        long logBytes = Files.size(file);
+
+        long replayNanos = timeStartup(file, true);
+        long snapshotBytes = Files.size(file.resolveSibling("outlook.log.snapshot"));
+        long snapshotNanos = timeStartup(file, false);
+
+        System.out.printf("%d mails in %d accounts%n", mails, ACCOUNTS);
+        System.out.printf("%10s %12s %12s %16s%n", "startup", "MB", "seconds", "mails/s");
+        System.out.printf("%10s %12.1f %12.2f %16.0f%n", "log", logBytes / 1e6, replayNanos / 1e9,
+                mails / (replayNanos / 1e9));
+        System.out.printf("%10s %12.1f %12.2f %16.0f%n", "snapshot", snapshotBytes / 1e6, snapshotNanos / 1e9,
+                mails / (snapshotNanos / 1e9));
+    }
+
+    private static void populate(Outlook outlook, int mails) {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            outlook.addNewAccount("Account" + i, "account" + i + "@abv.bg");
+            outlook.createFolder("Account" + i, "/inbox/mjt");
+            outlook.addRule("Account" + i, "/inbox/mjt", "subject-includes: MJT", 1);
+        }
+
+        List<RawMail> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < mails; i++) {
+            String metadata = "sender: account" + (i % ACCOUNTS) + "@abv.bg" + System.lineSeparator() +
+                    "subject: " + (i % 3 == 0 ? "MJT lab " : "Lecture ") + (i % 100) + System.lineSeparator() +
+                    "recipients: account" + (i % 7) + "@abv.bg" + System.lineSeparator() +
+                    "received: 2022-12-" + (10 + i % 20) + " 14:" + (10 + i % 50);
+            batch.add(new RawMail(metadata, "Body of mail " + (i % DISTINCT_BODIES) + " from the MJT course"));
+
+            if (batch.size() == BATCH || i == mails - 1) {
+                outlook.receiveMails("Account" + (i / BATCH % ACCOUNTS), batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Replays the log the first time and leaves a checkpoint behind, so the second startup loads a snapshot.
+    private static long timeStartup(Path file, boolean checkpointAfter) {
+        System.gc();
+        long start = System.nanoTime();
+        Outlook outlook = new Outlook(file, FsyncPolicy.NONE);
+        long elapsed = System.nanoTime() - start;
+
+        if (checkpointAfter) {
+            outlook.checkpoint();
+        }
+        outlook.close();
+        return elapsed;
+    }
+}
@@ -0,0 +1,52 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+// A dashboard polling an account with 200k mails in 20 folders: reading the kept counters against counting
+// the mails of every folder and summing their sizes.
+public class StatsBenchmark {
+
+    private static final int MAILS = 200_000;
+    private static final int FOLDERS = 20;
+    private static final int POLLS = 1_000_000;
+    private static final int SCANS = 20;
+
+    public static void main(String[] args) {
+        Outlook outlook = new Outlook();
+        outlook.addNewAccount("Ivan", "ivan@abv.bg");
+        for (int i = 0; i < FOLDERS; i++) {
+            outlook.createFolder("Ivan", "/inbox/f" + i);
+        }
+        for (int i = 0; i < MAILS; i++) {
+            outlook.addMailToAccount("Ivan", "/inbox/f" + i % FOLDERS, new Mail(new Account("niki@abv.bg",
+                    "Nikolay"), Set.of("ivan@abv.bg"), "MJT " + i, "body of mail " + i,
+                    LocalDateTime.of(2022, 12, 8, 14, 14).plusMinutes(i)));
+        }
+
+        long pollNanos = 0;
+        long scanNanos = 0;
+        long sink = 0;
+        for (int round = 0; round < 2; round++) {      // The first round is warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < POLLS; i++) {
+                sink += outlook.getAccountStats("Ivan").totalBytes();
+            }
+            pollNanos = (System.nanoTime() - start) / POLLS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SCANS; i++) {
+                for (String path : outlook.listFolders("Ivan", "/inbox")) {
+                    for (Mail mail : outlook.getMailsFromFolder("Ivan", path)) {
+                        sink += Folder.sizeOf(mail);
+                    }
+                }
+            }
+            scanNanos = (System.nanoTime() - start) / SCANS;
+        }
+
+        System.out.printf("%12s %14s%n", "read", "us/poll");
+        System.out.printf("%12s %14.3f%n", "counters", pollNanos / 1e3);
+        System.out.printf("%12s %14.3f   (%d)%n", "scan", scanNanos / 1e3, sink);
+    }
+}
@@ -0,0 +1,73 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// "Mails from the last 24h" and "newest 20" on folders of growing size: the folder's time index against
+// scanning and sorting the arrival-ordered list on every request.
+public class TimeRangeBenchmark {
+
+    private static final int[] FOLDER_SIZES = {10_000, 100_000, 1_000_000};
+    private static final int QUERIES = 200;
+    private static final int SCAN_QUERIES = 10;
+    private static final int NEWEST = 20;
+    private static final LocalDateTime NOW = LocalDateTime.of(2022, 12, 8, 14, 14);
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %14s %14s %14s %14s%n", "mails", "range us", "scan us", "newest us", "sort us");
+        for (int size : FOLDER_SIZES) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        Folder folder = new Folder();
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {          // Delivered out of order over the last year
+            LocalDateTime received = NOW.minusMinutes(random.nextInt(365 * 24 * 60));
+            folder.add(new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of(), "MJT " + i, "body", received));
+        }
+        LocalDateTime dayAgo = NOW.minusDays(1);
+
+        long[] nanos = new long[4];
+        int sink = 0;
+        for (int round = 0; round < 2; round++) {  // The first round is warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                sink += folder.getMailsReceivedBetween(dayAgo, NOW).size();
+            }
+            nanos[0] = (System.nanoTime() - start) / QUERIES;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SCAN_QUERIES; i++) {
+                sink += folder.getMails().stream()
+                        .filter(mail -> !mail.received().isBefore(dayAgo) && !mail.received().isAfter(NOW))
+                        .sorted(Comparator.comparing(Mail::received))
+                        .toList().size();
+            }
+            nanos[1] = (System.nanoTime() - start) / SCAN_QUERIES;
+
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                sink += folder.getNewestMails(NEWEST).size();
+            }
+            nanos[2] = (System.nanoTime() - start) / QUERIES;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SCAN_QUERIES; i++) {
+                List<Mail> sorted = folder.getMails().stream()
+                        .sorted(Comparator.comparing(Mail::received).reversed())
+                        .limit(NEWEST)
+                        .toList();
+                sink += sorted.size();
+            }
+            nanos[3] = (System.nanoTime() - start) / SCAN_QUERIES;
+        }
+
+        System.out.printf("%10d %14.1f %14.1f %14.1f %14.1f   (%d)%n", size, nanos[0] / 1e3, nanos[1] / 1e3,
+                nanos[2] / 1e3, nanos[3] / 1e3, sink);
+    }
+}
@@ -0,0 +1,62 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.storage.FsyncPolicy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Durable receiveMail throughput per fsync policy, with several threads so that group commit has concurrent
+// callers to batch. The in-memory client is the baseline.
+public class WriteAheadLogBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int MAILS_PER_THREAD = 2_000;
+    private static final String METADATA = "sender: niki@abv.bg" + System.lineSeparator() +
+            "subject: Hello, MJT!" + System.lineSeparator() +
+            "recipients: pesho@gmail.com, gosho@gmail.com" + System.lineSeparator() +
+            "received: 2022-12-08 14:14";
+    private static final String BODY = "MJT course is the best course in FMI! ".repeat(10);
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("outlook-wal");
+
+        System.out.printf("%10s %16s %16s%n", "policy", "mails/s", "log MB");
+        run("memory", new Outlook(), null);
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            Path file = directory.resolve(policy.name().toLowerCase() + ".log");
+            run(policy.name().toLowerCase(), new Outlook(file, policy), file);
+        }
+    }
+
+    private static void run(String name, Outlook outlook, Path file) throws InterruptedException, IOException {
+        for (int i = 0; i < THREADS; i++) {
+            outlook.addNewAccount("Account" + i, "account" + i + "@abv.bg");
+            outlook.createFolder("Account" + i, "/inbox/mjt");
+            outlook.addRule("Account" + i, "/inbox/mjt", "subject-includes: MJT", 1);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String account = "Account" + i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < MAILS_PER_THREAD; j++) {
+                    outlook.receiveMail(account, METADATA, BODY);
+                }
+            }));
+        }
+
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        outlook.close();
+
+        double logMegabytes = file == null ? 0 : Files.size(file) / 1e6;
+        System.out.printf("%10s %16.0f %16.1f%n", name, THREADS * MAILS_PER_THREAD / (elapsed / 1e9), logMegabytes);
+    }
+}
@@ -0,0 +1,76 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.RawMail;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Outlook.addRule on a full /inbox, which reclassifies every mail in it. A rule can only be added once, so
+// every measured call gets a freshly filled account: single shot, one invocation per iteration.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AddRuleBenchmark {
+
+    private static final String ACCOUNT = MailFixtures.accountName(0);
+    private static final String TARGET = "/inbox/target";
+
+    @Param({"10000", "100000"})
+    public int inboxSize;
+
+    @Param({"0", "100"})
+    public int rulesPerAccount;
+
+    @Param({"256", "4096"})
+    public int bodySize;
+
+    private List<RawMail> mails;
+    private Outlook outlook;
+
+    @Setup(Level.Trial)
+    public void prepareMails() {
+        mails = new ArrayList<>(inboxSize);
+        for (int i = 0; i < inboxSize; i++) {
+            String subject = (i % 10 == 0 ? "target " : "other ") + i;
+            mails.add(new RawMail(MailFixtures.metadata("news@fmi.bg", subject, MailFixtures.email(0)),
+                    MailFixtures.body(bodySize, i % 64)));
+        }
+    }
+
+    // The existing rules are added before the mails, so the mails stay in /inbox unless they match one.
+    @Setup(Level.Iteration)
+    public void prepareOutlook() {
+        outlook = MailFixtures.outlook(1, rulesPerAccount);
+        outlook.createFolder(ACCOUNT, TARGET);
+        outlook.receiveMails(ACCOUNT, mails);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeOutlook() {
+        outlook.close();
+    }
+
+    @Benchmark
+    public Outlook addRule() {
+        outlook.addRule(ACCOUNT, TARGET, "subject-includes: target", 1);
+        return outlook;
+    }
+}
@@ -0,0 +1,132 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.CompiledRule;
+import bg.sofia.uni.fmi.mjt.mail.DirectKeywordScan;
+import bg.sofia.uni.fmi.mjt.mail.KeywordScan;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.Rule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// The compiled rule against the interpreter it replaced, over one mail and several rule shapes. Every shape
+// has a matching and a rejecting rule, evaluated in turn so neither arm sees a single constant outcome.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompiledRuleBenchmark {
+
+    @Param({"sender", "single-keyword", "recipients", "full"})
+    public String shape;
+
+    private Mail mail;
+    private KeywordScan scan;
+    private Rule[] rules;
+    private CompiledRule[] compiled;
+
+    @Setup
+    public void prepare() {
+        mail = new Mail(new Account("stoyo@fmi.bg", "Stoyo"), Set.of("ivan@abv.bg", "niki@abv.bg"),
+                "MJT 2022 exam results", MailFixtures.body(1024, 7) + " izpit", LocalDateTime.of(2022, 12, 8, 14, 14));
+        scan = new DirectKeywordScan(mail);
+
+        String[] definitions = switch (shape) {
+            case "sender" -> new String[] {
+                "from: stoyo@fmi.bg" + System.lineSeparator() + "subject-includes: exam",
+                "from: gosho@fmi.bg" + System.lineSeparator() + "subject-includes: exam"};
+            case "single-keyword" -> new String[] {"subject-includes: exam", "subject-includes: kontrolno"};
+            case "recipients" -> new String[] {
+                "recipients-includes: pesho@abv.bg, gosho@abv.bg, niki@abv.bg",
+                "recipients-includes: pesho@abv.bg, gosho@abv.bg, stoyo@abv.bg"};
+            default -> new String[] {
+                "subject-includes: mjt, 2022" + System.lineSeparator() +
+                    "subject-or-body-includes: izpit, exam" + System.lineSeparator() +
+                    "recipients-includes: ivan@abv.bg" + System.lineSeparator() + "from: stoyo@fmi.bg",
+                "subject-includes: mjt, 2022" + System.lineSeparator() +
+                    "subject-or-body-includes: izpit, kontrolno" + System.lineSeparator() +
+                    "recipients-includes: ivan@abv.bg" + System.lineSeparator() + "from: stoyo@fmi.bg"};
+        };
+
+        rules = new Rule[definitions.length];
+        compiled = new CompiledRule[definitions.length];
+        for (int i = 0; i < definitions.length; i++) {
+            rules[i] = new Rule("/inbox/mjt", 1);
+            rules[i].parseRuleDefinition(definitions[i]);
+            compiled[i] = CompiledRule.of(rules[i]);
+        }
+    }
+
+    @Benchmark
+    public int interpreted() {
+        int matched = 0;
+        for (Rule rule : rules) {
+            matched += interpret(rule, mail, scan) ? 1 : 0;
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int compiled() {
+        int matched = 0;
+        for (CompiledRule rule : compiled) {
+            matched += rule.matches(mail, scan) ? 1 : 0;
+        }
+        return matched;
+    }
+
+    // The evaluation Rule used before rules were compiled, kept verbatim as the baseline.
+    private static boolean interpret(Rule rule, Mail mail, KeywordScan scan) {
+        int condition = 0;
+
+        if (rule.getSender() != null && !rule.getSender().equals(mail.sender().emailAddress())) {
+            return false;
+        }
+        if (rule.getRecipientsEmails() != null && !rule.getRecipientsEmails().isEmpty()) {
+            condition = 1;
+            int flag = 0;
+            for (String email : rule.getRecipientsEmails()) {
+                if (mail.recipients().contains(email)) {
+                    flag = 1;
+                    break;
+                }
+            }
+            if (flag == 0) {
+                return false;
+            }
+        }
+        if (rule.getSubjectIncludes() != null && !rule.getSubjectIncludes().isEmpty()) {
+            condition = 1;
+            for (String subjectWord : rule.getSubjectIncludes()) {
+                if (!scan.subjectContains(subjectWord)) {
+                    return false;
+                }
+            }
+        }
+        if (rule.getSubjectOrBodyIncludes() != null && !rule.getSubjectOrBodyIncludes().isEmpty()) {
+            condition = 1;
+            for (String subjectOrBodyWord : rule.getSubjectOrBodyIncludes()) {
+                if (!scan.subjectOrBodyContains(subjectOrBodyWord)) {
+                    return false;
+                }
+            }
+        }
+
+        return condition == 1;
+    }
+}
@@ -0,0 +1,110 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.CompiledRule;
+import bg.sofia.uni.fmi.mjt.mail.DirectKeywordScan;
+import bg.sofia.uni.fmi.mjt.mail.KeywordHits;
+import bg.sofia.uni.fmi.mjt.mail.KeywordMatcher;
+import bg.sofia.uni.fmi.mjt.mail.KeywordScan;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.MailFeatures;
+import bg.sofia.uni.fmi.mjt.mail.Rule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// One incoming mail against every rule of an account, none of which matches, so all of them are evaluated.
+// Half of the rules look at the subject and half at the subject or body. Each arm includes preparing the
+// mail: nothing for per-rule String.contains, the pair signatures for MailFeatures alone, and the signatures
+// plus whatever automaton scans they do not rule out for KeywordHits, which is what AccountRules uses.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MailFeaturesBenchmark {
+
+    @Param({"10", "100", "400"})
+    public int rules;
+
+    @Param({"2048", "16384"})
+    public int bodySize;
+
+    @Param({"rare", "common"})
+    public String keywords;
+
+    private Mail mail;
+    private CompiledRule[] compiled;
+    private KeywordMatcher matcher;
+
+    @Setup
+    public void prepare() {
+        mail = new Mail(new Account("stoyo@fmi.bg", "Stoyo"), Set.of("ivan@abv.bg"), "MJT 2022 exam results",
+                MailFixtures.body(bodySize, 7), LocalDateTime.of(2022, 12, 8, 14, 14));
+
+        compiled = new CompiledRule[rules];
+        matcher = new KeywordMatcher();
+        for (int r = 0; r < rules; r++) {
+            Rule rule = new Rule("/inbox/" + MailFixtures.topic(r), r % 10 + 1);
+            rule.parseRuleDefinition((r % 2 == 0 ? "subject-includes: " : "subject-or-body-includes: ") +
+                    keyword(r));
+            compiled[r] = CompiledRule.of(rule);
+            matcher.addAll(rule.getSubjectIncludes());
+            matcher.addAll(rule.getSubjectOrBodyIncludes());
+        }
+    }
+
+    @Benchmark
+    public int perRuleContains() {
+        return firstMatch(new DirectKeywordScan(mail));
+    }
+
+    @Benchmark
+    public int featuresAndAutomaton() {
+        return firstMatch(new KeywordHits(matcher, MailFeatures.of(mail)));
+    }
+
+    @Benchmark
+    public int features() {
+        return firstMatch(MailFeatures.of(mail));
+    }
+
+    // Rare keywords have a character pair the body lacks. Common ones are four body words in a row: every pair
+    // occurs in the body, but the sequence itself does not.
+    private String keyword(int r) {
+        if (keywords.equals("rare")) {
+            return "topic" + r;
+        }
+
+        for (long seed = r; ; seed += rules) {
+            String[] words = MailFixtures.body(64, seed).split(" ");
+            String keyword = words[0] + " " + words[1] + " " + words[2] + " " + words[3];
+            if (!mail.body().contains(keyword)) {
+                return keyword;
+            }
+        }
+    }
+
+    private int firstMatch(KeywordScan scan) {
+        for (int r = 0; r < compiled.length; r++) {
+            if (compiled[r].matches(mail, scan)) {
+                return r;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,64 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+
+import java.util.Random;
+
+// Deterministic accounts, rules and mails shared by the benchmarks.
+final class MailFixtures {
+
+    static final int TOPICS = 200;
+    private static final String[] WORDS = {"meeting", "report", "exam", "lecture", "deadline", "lunch", "update",
+        "review", "invoice", "project", "release", "holiday", "budget", "homework", "grades", "schedule"};
+
+    private MailFixtures() {
+    }
+
+    static String accountName(int idx) {
+        return "account" + idx;
+    }
+
+    static String email(int idx) {
+        return "account" + idx + "@abv.bg";
+    }
+
+    static String topic(int idx) {
+        return "topic" + idx % TOPICS;
+    }
+
+    static String metadata(String senderEmail, String subject, String recipients) {
+        return "sender: " + senderEmail + System.lineSeparator() +
+                "subject: " + subject + System.lineSeparator() +
+                "recipients: " + recipients + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+    }
+
+    static String body(int size, long seed) {
+        Random random = new Random(seed);
+        StringBuilder body = new StringBuilder(size + 16);
+        while (body.length() < size) {
+            body.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        body.setLength(size);
+        return body.toString();
+    }
+
+    // Accounts with the given number of rules each, every rule moving its own topic to its own folder.
+    static Outlook outlook(int accounts, int rulesPerAccount) {
+        Outlook outlook = new Outlook();
+        for (int i = 0; i < accounts; i++) {
+            outlook.addNewAccount(accountName(i), email(i));
+            addRules(outlook, accountName(i), rulesPerAccount);
+        }
+
+        return outlook;
+    }
+
+    static void addRules(Outlook outlook, String accountName, int rules) {
+        for (int r = 0; r < rules; r++) {
+            String folder = "/inbox/" + topic(r);
+            outlook.createFolder(accountName, folder);
+            outlook.addRule(accountName, folder, "subject-includes: " + topic(r), r % 10 + 1);
+        }
+    }
+}
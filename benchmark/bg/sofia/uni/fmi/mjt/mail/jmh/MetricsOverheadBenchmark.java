@@ -0,0 +1,81 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.FolderStats;
+import bg.sofia.uni.fmi.mjt.mail.InstrumentedMailClient;
+import bg.sofia.uni.fmi.mjt.mail.MailClient;
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.metrics.HistogramMetricsRecorder;
+import bg.sofia.uni.fmi.mjt.mail.metrics.MetricsRecorder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of the instrumentation: "off" is a plain Outlook, whose stages report to the no-op recorder, and "on"
+// records into histograms at every stage and around every call. getFolderStats is the cheapest call there
+// is, so the timing itself dominates any difference; receiveMail shows it on a real delivery.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    private static final String ACCOUNT = MailFixtures.accountName(0);
+
+    @Param({"off", "on"})
+    public String metrics;
+
+    private MailClient client;
+    private Outlook outlook;
+    private String metadata;
+    private String body;
+
+    @Setup(Level.Trial)
+    public void prepareMail() {
+        metadata = MailFixtures.metadata("news@fmi.bg", MailFixtures.topic(3) + " weekly news",
+                MailFixtures.email(0));
+        body = MailFixtures.body(256, 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void prepareClient() {
+        if (metrics.equals("on")) {
+            HistogramMetricsRecorder recorder = new HistogramMetricsRecorder();
+            outlook = new Outlook(recorder);
+            client = new InstrumentedMailClient(outlook, recorder);
+        } else {
+            outlook = new Outlook(MetricsRecorder.NONE);
+            client = outlook;
+        }
+        client.addNewAccount(ACCOUNT, MailFixtures.email(0));
+        MailFixtures.addRules(outlook, ACCOUNT, 10);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeClient() {
+        outlook.close();
+    }
+
+    @Benchmark
+    public FolderStats getFolderStats() {
+        return client.getFolderStats(ACCOUNT, "/inbox");
+    }
+
+    @Benchmark
+    public void receiveMail() {
+        client.receiveMail(ACCOUNT, metadata, body);
+    }
+}
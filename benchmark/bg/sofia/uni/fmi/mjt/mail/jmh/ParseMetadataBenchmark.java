@@ -0,0 +1,63 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+// Outlook.parseMailMetadata with a growing recipient list and body; the body is only interned, never scanned.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseMetadataBenchmark {
+
+    @Param({"1", "100"})
+    public int accounts;
+
+    @Param({"1", "20"})
+    public int recipients;
+
+    @Param({"256", "16384"})
+    public int bodySize;
+
+    private Outlook outlook;
+    private String metadata;
+    private String body;
+
+    @Setup
+    public void prepare() {
+        outlook = MailFixtures.outlook(accounts, 0);
+        StringJoiner recipientList = new StringJoiner(", ");
+        for (int i = 0; i < recipients; i++) {
+            recipientList.add(MailFixtures.email(i));
+        }
+        metadata = MailFixtures.metadata(MailFixtures.email(0), "MJT 2022 exam results", recipientList.toString());
+        body = MailFixtures.body(bodySize, 3);
+    }
+
+    @TearDown
+    public void close() {
+        outlook.close();
+    }
+
+    @Benchmark
+    public Mail parseMailMetadata() {
+        return outlook.parseMailMetadata(metadata, body);
+    }
+}
@@ -0,0 +1,72 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Outlook.receiveMail: parse, classify against the account's rules and store. Every iteration starts from an
+// empty client, so the stored mails do not pile up across iterations.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ReceiveMailBenchmark {
+
+    private static final int DISTINCT_MAILS = 1024;
+
+    @Param({"1", "100"})
+    public int accounts;
+
+    @Param({"0", "10", "100"})
+    public int rulesPerAccount;
+
+    @Param({"256", "16384"})
+    public int bodySize;
+
+    private Outlook outlook;
+    private String[] metadata;
+    private String[] bodies;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void prepareMails() {
+        metadata = new String[DISTINCT_MAILS];
+        bodies = new String[DISTINCT_MAILS];
+        for (int i = 0; i < DISTINCT_MAILS; i++) {
+            metadata[i] = MailFixtures.metadata("news@fmi.bg", MailFixtures.topic(i * 7) + " weekly news",
+                    MailFixtures.email(i % accounts));
+            bodies[i] = MailFixtures.body(bodySize, i);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void prepareOutlook() {
+        outlook = MailFixtures.outlook(accounts, rulesPerAccount);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeOutlook() {
+        outlook.close();
+    }
+
+    @Benchmark
+    public void receiveMail() {
+        int idx = next++ & (DISTINCT_MAILS - 1);
+        outlook.receiveMail(MailFixtures.accountName(idx % accounts), metadata[idx], bodies[idx]);
+    }
+}
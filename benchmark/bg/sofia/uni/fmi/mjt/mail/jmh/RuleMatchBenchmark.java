@@ -0,0 +1,65 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.Rule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Rule.checkIfMailMatchesRule on its own: a rule whose keywords are all in the mail, and one failing on its
+// last keyword, which has to search the whole body.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleMatchBenchmark {
+
+    @Param({"256", "16384"})
+    public int bodySize;
+
+    private Mail mail;
+    private Rule matching;
+    private Rule failing;
+
+    @Setup
+    public void prepare() {
+        String body = MailFixtures.body(bodySize, 7) + " izpit";
+        mail = new Mail(new Account("stoyo@fmi.bg", "Stoyo"), Set.of("ivan@abv.bg", "niki@abv.bg"),
+                "MJT 2022 exam results", body, LocalDateTime.of(2022, 12, 8, 14, 14));
+
+        matching = new Rule("/inbox/mjt", 1);
+        matching.parseRuleDefinition("subject-includes: mjt, 2022" + System.lineSeparator() +
+                "subject-or-body-includes: izpit" + System.lineSeparator() +
+                "recipients-includes: ivan@abv.bg" + System.lineSeparator() +
+                "from: stoyo@fmi.bg");
+
+        failing = new Rule("/inbox/mjt", 1);
+        failing.parseRuleDefinition("subject-includes: mjt" + System.lineSeparator() +
+                "subject-or-body-includes: izpit, kontrolno");
+    }
+
+    @Benchmark
+    public boolean matchingRule() {
+        return matching.checkIfMailMatchesRule(mail);
+    }
+
+    @Benchmark
+    public boolean failingRule() {
+        return failing.checkIfMailMatchesRule(mail);
+    }
+}
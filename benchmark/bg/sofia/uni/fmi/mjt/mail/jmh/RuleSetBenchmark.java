@@ -0,0 +1,69 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.AddressRuleIndex;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.MailFeatures;
+import bg.sofia.uni.fmi.mjt.mail.Rule;
+import bg.sofia.uni.fmi.mjt.mail.RuleSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// First-match search over an account whose rules are spread over all ten priority levels, each rule filing
+// the mails of one sender. The matching rule is the last one added to the lowest level, so every level is
+// searched. Plain levels evaluate every rule in order; address-indexed levels only the rules of the sender.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleSetBenchmark {
+
+    @Param({"100", "1000"})
+    public int rules;
+
+    private MailFeatures features;
+    private RuleSet inOrder;
+    private RuleSet indexed;
+
+    @Setup
+    public void prepare() {
+        inOrder = new RuleSet();
+        indexed = new RuleSet(AddressRuleIndex::new);
+        for (int r = 0; r < rules; r++) {
+            Rule rule = new Rule("/inbox/" + MailFixtures.topic(r), RuleSet.HIGHEST_PRIORITY + r % 10);
+            rule.parseRuleDefinition("from: " + MailFixtures.email(r) + System.lineSeparator() +
+                    "subject-includes: " + MailFixtures.topic(r));
+            inOrder.add(rule);
+            indexed.add(rule);
+        }
+
+        int last = rules - 1;
+        features = MailFeatures.of(new Mail(new Account(MailFixtures.email(last), "Sender"), Set.of("me@abv.bg"),
+                MailFixtures.topic(last) + " update", "body", LocalDateTime.of(2022, 12, 8, 14, 14)));
+    }
+
+    @Benchmark
+    public Rule inOrder() {
+        return inOrder.findFirstMatch(features, features);
+    }
+
+    @Benchmark
+    public Rule indexed() {
+        return indexed.findFirstMatch(features, features);
+    }
+}
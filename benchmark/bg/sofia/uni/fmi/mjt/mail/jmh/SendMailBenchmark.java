@@ -0,0 +1,69 @@
+package bg.sofia.uni.fmi.mjt.mail.jmh;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+// Outlook.sendMail fanning one mail out to a growing number of local recipients, each classifying it against
+// its own rules.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SendMailBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int recipients;
+
+    @Param({"0", "10"})
+    public int rulesPerAccount;
+
+    @Param({"256", "16384"})
+    public int bodySize;
+
+    private Outlook outlook;
+    private String metadata;
+    private String body;
+
+    @Setup(Level.Trial)
+    public void prepareMail() {
+        StringJoiner recipientList = new StringJoiner(", ");
+        for (int i = 1; i <= recipients; i++) {
+            recipientList.add(MailFixtures.email(i));
+        }
+        metadata = MailFixtures.metadata(MailFixtures.email(0), MailFixtures.topic(3) + " for everyone",
+                recipientList.toString());
+        body = MailFixtures.body(bodySize, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void prepareOutlook() {
+        outlook = MailFixtures.outlook(recipients + 1, rulesPerAccount);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeOutlook() {
+        outlook.close();
+    }
+
+    @Benchmark
+    public void sendMail() {
+        outlook.sendMail(MailFixtures.accountName(0), metadata, body);
+    }
+}
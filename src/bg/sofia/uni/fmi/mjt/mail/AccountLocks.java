@@ -0,0 +1,85 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Striped read-write locks keyed by account name. Operations on accounts in different stripes run in parallel.
+// Delivering mail only reads the account's rules and folder layout, so it takes the shared side and deliveries
+// to one account run in parallel too; changing rules or folders takes the exclusive side. Operations touching
+// several accounts take their stripes in ascending index order, so two of them can never deadlock.
+public class AccountLocks {
+
+    private static final int DEFAULT_STRIPES = 64;
+    private final ReadWriteLock[] stripes;
+
+    public AccountLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public AccountLocks(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    public void lock(String accountName) {
+        stripes[stripeOf(accountName)].writeLock().lock();
+    }
+
+    public void unlock(String accountName) {
+        stripes[stripeOf(accountName)].writeLock().unlock();
+    }
+
+    public void lockShared(String accountName) {
+        stripes[stripeOf(accountName)].readLock().lock();
+    }
+
+    public void unlockShared(String accountName) {
+        stripes[stripeOf(accountName)].readLock().unlock();
+    }
+
+    public int[] lockAllShared(Collection<String> accountNames) {
+        int[] indexes = accountNames.stream()
+                .mapToInt(this::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        for (int idx : indexes) {
+            stripes[idx].readLock().lock();
+        }
+
+        return indexes;
+    }
+
+    public void unlockAllShared(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            stripes[indexes[i]].readLock().unlock();
+        }
+    }
+
+    // Every stripe exclusively, e.g. to take a consistent view of all accounts.
+    public void lockAll() {
+        for (ReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+        }
+    }
+
+    public void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].writeLock().unlock();
+        }
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    private int stripeOf(String accountName) {
+        int hash = accountName.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
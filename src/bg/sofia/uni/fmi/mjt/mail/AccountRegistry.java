@@ -0,0 +1,59 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountAlreadyExistsException;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Lookups go straight to concurrent maps and never lock; registration is rare and is serialized.
+public class AccountRegistry {
+    private final Set<Account> allAccounts;
+    private final Map<String, Account> accountsByName;      //AccountName - Account
+    private final Map<String, Account> accountsByEmail;     //Email - Account
+
+    public AccountRegistry() {
+        allAccounts = new HashSet<>();
+        accountsByName = new ConcurrentHashMap<>();
+        accountsByEmail = new ConcurrentHashMap<>();
+    }
+
+    public synchronized Account register(String accountName, String email) {
+        if (accountsByName.containsKey(accountName)) {
+            throw new AccountAlreadyExistsException("Account with this name already existed!");
+        }
+
+        Account newAccount = new Account(email, accountName);
+        allAccounts.add(newAccount);
+        accountsByName.put(accountName, newAccount);
+        accountsByEmail.putIfAbsent(email, newAccount);     // The first account registered with an email owns it
+
+        return newAccount;
+    }
+
+    public boolean containsName(String accountName) {
+        return accountsByName.containsKey(accountName);
+    }
+
+    public boolean containsEmail(String email) {
+        return accountsByEmail.containsKey(email);
+    }
+
+    public Account getByName(String accountName) {
+        return accountsByName.get(accountName);
+    }
+
+    public Account getByEmail(String email) {
+        return accountsByEmail.get(email);
+    }
+
+    public synchronized Set<Account> getAllAccounts() {
+        return Collections.unmodifiableSet(new HashSet<>(allAccounts));
+    }
+
+    public int size() {
+        return accountsByName.size();
+    }
+}
@@ -0,0 +1,46 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+public class AccountRules {
+
+    private final RuleSet rules;
+    private final KeywordMatcher keywords;
+    private long version;
+
+    public AccountRules() {
+        rules = new RuleSet(AddressRuleIndex::new);
+        keywords = new KeywordMatcher();
+    }
+
+    public boolean addRule(Rule rule) {
+        if (!rules.add(rule)) {
+            return false;
+        }
+
+        keywords.addAll(rule.getSubjectIncludes());
+        keywords.addAll(rule.getSubjectOrBodyIncludes());
+        version++;
+        return true;
+    }
+
+    // Priority levels are searched from the highest down and every level is indexed by sender and recipients,
+    // so the search ends in the first level with a match, having evaluated only rules the mail can match.
+    public Rule findBestRule(MailFeatures features) {
+        return rules.findFirstMatch(features, new KeywordHits(keywords, features));
+    }
+
+    public Rule findBestRule(Mail mail) {
+        return findBestRule(MailFeatures.of(mail));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    public KeywordMatcher getKeywords() {
+        return keywords;
+    }
+}
@@ -0,0 +1,60 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Only rules that can match the mail's sender or one of its recipients are evaluated, together with the
+// rules that have no address condition. Every list is in insertion order, so a list is left as soon as it
+// reaches a rule added after the best match found so far.
+public class AddressRuleIndex implements RuleIndex {
+
+    private final Map<String, List<Entry>> rulesBySender = new HashMap<>();     //Sender email - Rules with "from"
+    private final Map<String, List<Entry>> rulesByRecipient = new HashMap<>();  //Recipient email - Rules listing it
+    private final List<Entry> unaddressedRules = new ArrayList<>();             //No "from" or "recipients-includes"
+
+    @Override
+    public void add(int position, Rule rule) {
+        Entry entry = new Entry(position, rule);
+        if (rule.getSender() != null) {                     // "from" is an exact match, so it is the most selective
+            rulesBySender.computeIfAbsent(rule.getSender(), sender -> new ArrayList<>()).add(entry);
+        } else if (!rule.getRecipientsEmails().isEmpty()) {
+            for (String recipient : rule.getRecipientsEmails()) {
+                rulesByRecipient.computeIfAbsent(recipient, email -> new ArrayList<>()).add(entry);
+            }
+        } else {
+            unaddressedRules.add(entry);
+        }
+    }
+
+    @Override
+    public Rule findFirstMatch(List<Rule> level, MailFeatures features, KeywordScan scan) {
+        Entry best = findFirstMatch(rulesBySender.get(features.sender()), features.mail(), scan, null);
+        for (String recipient : features.recipients()) {
+            best = findFirstMatch(rulesByRecipient.get(recipient), features.mail(), scan, best);
+        }
+        best = findFirstMatch(unaddressedRules, features.mail(), scan, best);
+
+        return best == null ? null : best.rule();
+    }
+
+    private Entry findFirstMatch(List<Entry> entries, Mail mail, KeywordScan scan, Entry best) {
+        if (entries == null) {
+            return best;
+        }
+
+        for (Entry entry : entries) {
+            if (best != null && entry.position() >= best.position()) {
+                break;
+            }
+            if (entry.rule().checkIfMailMatchesRule(mail, scan)) {
+                return entry;
+            }
+        }
+
+        return best;
+    }
+
+    private record Entry(int position, Rule rule) { }
+}
@@ -0,0 +1,62 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Content-addressed store for mail bodies: bodies are looked up by their content hash and compared by content,
+// and every equal body resolves to one canonical String that all mails share. Entries are weak on both sides,
+// so a body disappears from the store as soon as the last mail holding it is gone.
+public class BodyStore {
+
+    private static final int STRIPES = 16;
+    private final Map<String, WeakReference<String>>[] stripes;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder savedChars = new LongAdder();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BodyStore() {
+        stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new WeakHashMap<>();
+        }
+    }
+
+    public String intern(String body) {
+        if (body == null) {
+            return null;
+        }
+
+        lookups.increment();
+        int hash = body.hashCode();
+        Map<String, WeakReference<String>> stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+
+        synchronized (stripe) {
+            WeakReference<String> stored = stripe.get(body);
+            String canonical = stored == null ? null : stored.get();
+            if (canonical != null) {
+                hits.increment();
+                savedChars.add(body.length());
+                return canonical;
+            }
+
+            stripe.put(body, new WeakReference<>(body));
+            return body;
+        }
+    }
+
+    public BodyStoreStats getStats() {
+        int distinct = 0;
+        for (Map<String, WeakReference<String>> stripe : stripes) {
+            synchronized (stripe) {
+                distinct += stripe.size();
+            }
+        }
+
+        return new BodyStoreStats(distinct, lookups.sum(), hits.sum(), savedChars.sum());
+    }
+
+    public record BodyStoreStats(int distinctBodies, long lookups, long deduplicated, long savedChars) { }
+}
@@ -0,0 +1,54 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+// Splits a folder into chunks and classifies them on a ForkJoinPool. Each mail's target folder is written
+// to its own slot of the result array, so the workers never share mutable state.
+public class ClassificationTask extends RecursiveAction {
+
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+    private final List<Mail> mails;
+    private final Function<Mail, String> classifier;
+    private final String[] targets;
+    private final int from;
+    private final int to;
+
+    private ClassificationTask(List<Mail> mails, Function<Mail, String> classifier, String[] targets,
+                               int from, int to) {
+        this.mails = mails;
+        this.classifier = classifier;
+        this.targets = targets;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static String[] classifyAll(List<Mail> mails, Function<Mail, String> classifier) {
+        String[] targets = new String[mails.size()];
+        ClassificationTask task = new ClassificationTask(mails, classifier, targets, 0, mails.size());
+
+        if (mails.size() <= SEQUENTIAL_THRESHOLD) {
+            task.compute();                             // Not worth handing small folders to the pool
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+
+        return targets;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= SEQUENTIAL_THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                targets[i] = classifier.apply(mails.get(i));
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        invokeAll(new ClassificationTask(mails, classifier, targets, from, middle),
+                new ClassificationTask(mails, classifier, targets, middle, to));
+    }
+}
@@ -0,0 +1,110 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+
+// A parsed rule reduced to the checks it actually has, ordered so a mail is rejected as cheaply as possible:
+// the exact sender compare, then recipient lookups, then subject keywords and last the keywords that may
+// search the whole body. Absent conditions cost one null check, and a condition with a single recipient or
+// keyword skips the loop. Every rule shape is this one final class, so the call in Rule stays monomorphic.
+public final class CompiledRule {
+
+    // A rule without recipient or keyword conditions matches no mail, whatever its sender.
+    private static final CompiledRule NEVER = new CompiledRule(null, null, null, null);
+    private final String sender;
+    private final String recipient;
+    private final String[] recipients;
+    private final String subjectKeyword;
+    private final String[] subjectKeywords;
+    private final String keyword;
+    private final String[] keywords;
+
+    private CompiledRule(String sender, String[] recipients, String[] subjectKeywords, String[] keywords) {
+        this.sender = sender;
+        this.recipient = single(recipients);
+        this.recipients = recipient == null ? recipients : null;
+        this.subjectKeyword = single(subjectKeywords);
+        this.subjectKeywords = subjectKeyword == null ? subjectKeywords : null;
+        this.keyword = single(keywords);
+        this.keywords = keyword == null ? keywords : null;
+    }
+
+    public static CompiledRule of(Rule rule) {
+        return compile(rule.getSender(), rule.getRecipientsEmails(), rule.getSubjectIncludes(),
+                rule.getSubjectOrBodyIncludes());
+    }
+
+    static CompiledRule compile(String sender, Set<String> recipientsEmails, Set<String> subjectIncludes,
+                                Set<String> subjectOrBodyIncludes) {
+        if (recipientsEmails.isEmpty() && subjectIncludes.isEmpty() && subjectOrBodyIncludes.isEmpty()) {
+            return NEVER;
+        }
+
+        return new CompiledRule(sender, toArray(recipientsEmails), toArray(subjectIncludes),
+                toArray(subjectOrBodyIncludes));
+    }
+
+    public boolean matches(Mail mail, KeywordScan scan) {
+        if (this == NEVER) {
+            return false;
+        }
+        if (sender != null && !sender.equals(mail.sender().emailAddress())) {
+            return false;
+        }
+        if (recipient != null) {
+            if (!mail.recipients().contains(recipient)) {
+                return false;
+            }
+        } else if (recipients != null && !containsAny(mail.recipients(), recipients)) {
+            return false;
+        }
+        if (subjectKeyword != null) {
+            if (!scan.subjectContains(subjectKeyword)) {
+                return false;
+            }
+        } else if (subjectKeywords != null) {
+            for (String word : subjectKeywords) {
+                if (!scan.subjectContains(word)) {
+                    return false;
+                }
+            }
+        }
+        if (keyword != null) {
+            return scan.subjectOrBodyContains(keyword);
+        } else if (keywords != null) {
+            for (String word : keywords) {
+                if (!scan.subjectOrBodyContains(word)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean containsAny(Set<String> mailRecipients, String[] emails) {
+        for (String email : emails) {
+            if (mailRecipients.contains(email)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Longer keywords are rarer, so trying them first rejects most mails after one search.
+    private static String[] toArray(Set<String> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+
+        String[] array = values.toArray(new String[0]);
+        Arrays.sort(array, Comparator.comparingInt(String::length).reversed());
+        return array;
+    }
+
+    private static String single(String[] values) {
+        return values != null && values.length == 1 ? values[0] : null;
+    }
+}
@@ -0,0 +1,26 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+public record DeliveryResult(Status status, String folderPath, RuntimeException error) {
+
+    public enum Status {
+        DELIVERED,
+        SKIPPED,
+        FAILED
+    }
+
+    public static DeliveryResult delivered(String folderPath) {
+        return new DeliveryResult(Status.DELIVERED, folderPath, null);
+    }
+
+    public static DeliveryResult skipped() {
+        return new DeliveryResult(Status.SKIPPED, null, null);
+    }
+
+    public static DeliveryResult failed(RuntimeException error) {
+        return new DeliveryResult(Status.FAILED, null, error);
+    }
+
+    public boolean isDelivered() {
+        return status == Status.DELIVERED;
+    }
+}
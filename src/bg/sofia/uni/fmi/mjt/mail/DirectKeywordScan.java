@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+public record DirectKeywordScan(Mail mail) implements KeywordScan {
+
+    @Override
+    public boolean subjectContains(String keyword) {
+        return mail.subject().contains(keyword);
+    }
+
+    @Override
+    public boolean subjectOrBodyContains(String keyword) {
+        return mail.subject().contains(keyword) || mail.body().contains(keyword);
+    }
+}
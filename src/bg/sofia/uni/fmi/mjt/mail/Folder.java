@@ -0,0 +1,286 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Append-mostly mail storage with lock-free reads. Writers are serialized on the folder and never touch a slot
+// that is already published: appends write past the published size and removals build a new array. Readers
+// take the current snapshot and get an immutable view of it, so they never block and are never blocked.
+// Every mail also gets an arrival sequence number, ascending along the array, which page tokens refer to: a
+// page walk resumes after the last mail it returned however many mails were appended or moved out meanwhile.
+// Next to the arrival order the folder keeps its mails ordered by received time in a skip list, so time range
+// and newest-first reads take logarithmic time. Mails without a received time are ordered before all others.
+// The snapshot also carries the folder's byte total and newest received time, so statistics are read in
+// constant time and always agree with the mails of the same snapshot.
+public class Folder {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final Comparator<TimeKey> BY_TIME = Comparator
+            .comparing(TimeKey::received, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingLong(TimeKey::sequence);
+    private final ConcurrentNavigableMap<TimeKey, Mail> byTime = new ConcurrentSkipListMap<>(BY_TIME);
+    private volatile Snapshot snapshot;
+    private long nextSequence;                  // Arrival number, makes equal received times distinct keys
+
+    public Folder() {
+        snapshot = new Snapshot(new Mail[INITIAL_CAPACITY], new long[INITIAL_CAPACITY], 0, 0, null);
+    }
+
+    // Returns the size of the added mail in bytes.
+    public synchronized long add(Mail mail) {
+        Snapshot current = snapshot;
+        Snapshot grown = ensureCapacity(current, current.size + 1);
+        append(grown, current.size, mail);
+        long bytes = sizeOf(mail);
+        snapshot = new Snapshot(grown.mails, grown.sequences, current.size + 1, current.bytes + bytes,
+                later(current.newest, mail.received()));
+        return bytes;
+    }
+
+    public synchronized long addAll(List<Mail> newMails) {
+        if (newMails.isEmpty()) {
+            return 0;
+        }
+
+        Snapshot current = snapshot;
+        Snapshot grown = ensureCapacity(current, current.size + newMails.size());
+        int size = current.size;
+        long bytes = 0;
+        LocalDateTime newest = current.newest;
+        for (Mail mail : newMails) {
+            append(grown, size++, mail);
+            bytes += sizeOf(mail);
+            newest = later(newest, mail.received());
+        }
+        snapshot = new Snapshot(grown.mails, grown.sequences, size, current.bytes + bytes, newest);
+        return bytes;
+    }
+
+    // Replaces the first prefixSize mails, e.g. the ones a reclassification pass looked at, while keeping
+    // anything appended after that pass took its snapshot. The replacement may only drop mails of the prefix,
+    // so the rest keep their sequence numbers and page walks go on; anything else is rejected untouched.
+    public synchronized void replacePrefix(int prefixSize, List<Mail> replacement) {
+        Snapshot current = snapshot;
+        int appended = current.size - prefixSize;
+        int size = replacement.size() + appended;
+
+        long bytes = current.bytes;
+        for (int i = 0; i < prefixSize; i++) {
+            bytes -= sizeOf(current.mails[i]);
+        }
+        for (Mail mail : replacement) {
+            bytes += sizeOf(mail);
+        }
+
+        Mail[] mails = new Mail[Math.max(INITIAL_CAPACITY, size)];
+        long[] sequences = new long[mails.length];
+        System.arraycopy(current.mails, prefixSize, mails, replacement.size(), appended);
+        System.arraycopy(current.sequences, prefixSize, sequences, replacement.size(), appended);
+
+        if (!keepSubsequence(current, prefixSize, replacement, mails, sequences)) {
+            throw new IllegalArgumentException("Replacement must keep the order of the mails and add none");
+        }
+
+        LocalDateTime newest = byTime.isEmpty() ? null : byTime.lastKey().received();
+        snapshot = new Snapshot(mails, sequences, size, bytes, newest);
+    }
+
+    public List<Mail> getMails() {
+        Snapshot current = snapshot;
+        return new MailView(current, 0, current.size);
+    }
+
+    // Up to pageSize mails following the mail the token points after, or from the start for a null token.
+    // The page is a view of the folder's snapshot, nothing is copied.
+    public Page getPage(String pageToken, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        Snapshot current = snapshot;
+        int start = 0;
+        if (pageToken != null) {
+            long lastSequence = parseToken(pageToken);
+            start = Arrays.binarySearch(current.sequences, 0, current.size, lastSequence);
+            start = start >= 0 ? start + 1 : -start - 1;
+        }
+
+        int end = (int) Math.min((long) start + pageSize, current.size);
+        String nextToken = end < current.size ? toToken(current.sequences[end - 1]) : null;
+        return new Page(new MailView(current, start, end), nextToken, current.size);
+    }
+
+    // Mails received within [from, to], oldest first; a null bound leaves that side open. Mails without a
+    // received time never fall into a range.
+    public List<Mail> getMailsReceivedBetween(LocalDateTime from, LocalDateTime to) {
+        NavigableMap<TimeKey, Mail> range = byTime;
+        range = from == null
+                ? range.tailMap(new TimeKey(LocalDateTime.MIN, Long.MIN_VALUE), true)
+                : range.tailMap(new TimeKey(from, Long.MIN_VALUE), true);
+        if (to != null) {
+            range = range.headMap(new TimeKey(to, Long.MAX_VALUE), true);
+        }
+
+        return new ArrayList<>(range.values());
+    }
+
+    // At most limit mails, newest first; mails without a received time come last.
+    public List<Mail> getNewestMails(int limit) {
+        List<Mail> newest = new ArrayList<>(Math.min(limit, snapshot.size));
+        for (Mail mail : byTime.descendingMap().values()) {
+            if (newest.size() == limit) {
+                break;
+            }
+            newest.add(mail);
+        }
+
+        return newest;
+    }
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    public FolderStats getStats() {
+        Snapshot current = snapshot;
+        return new FolderStats(current.size, current.bytes, current.newest);
+    }
+
+    // UTF-8 size of the subject, body, sender and recipients, counted without encoding them.
+    public static long sizeOf(Mail mail) {
+        long bytes = utf8Length(mail.subject()) + utf8Length(mail.body());
+        if (mail.sender() != null) {
+            bytes += utf8Length(mail.sender().emailAddress());
+        }
+        for (String recipient : mail.recipients()) {
+            bytes += utf8Length(recipient);
+        }
+
+        return bytes;
+    }
+
+    static LocalDateTime later(LocalDateTime first, LocalDateTime second) {
+        if (first == null) {
+            return second;
+        }
+
+        return second == null || first.isAfter(second) ? first : second;
+    }
+
+    private static int utf8Length(String text) {
+        if (text == null) {
+            return 0;
+        }
+
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+
+    private static String toToken(long sequence) {
+        return Long.toString(sequence, Character.MAX_RADIX);
+    }
+
+    private static long parseToken(String pageToken) {
+        try {
+            return Long.parseLong(pageToken, Character.MAX_RADIX);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+    }
+
+    private void append(Snapshot target, int position, Mail mail) {
+        long sequence = nextSequence++;
+        target.mails[position] = mail;
+        target.sequences[position] = sequence;
+        byTime.put(new TimeKey(mail.received(), sequence), mail);
+    }
+
+    // Reclassification keeps the remaining mails in their order, so the replacement is matched against the
+    // prefix by identity; mails of the prefix missing from it are dropped from the time index.
+    private boolean keepSubsequence(Snapshot current, int prefixSize, List<Mail> replacement, Mail[] mails,
+                                    long[] sequences) {
+        List<TimeKey> removed = new ArrayList<>();
+        int kept = 0;
+        for (int i = 0; i < prefixSize; i++) {
+            if (kept < replacement.size() && replacement.get(kept) == current.mails[i]) {
+                mails[kept] = current.mails[i];
+                sequences[kept] = current.sequences[i];
+                kept++;
+            } else {
+                removed.add(new TimeKey(current.mails[i].received(), current.sequences[i]));
+            }
+        }
+
+        if (kept != replacement.size()) {
+            return false;
+        }
+
+        for (TimeKey key : removed) {
+            byTime.remove(key);
+        }
+        return true;
+    }
+
+    private static Snapshot ensureCapacity(Snapshot current, int required) {
+        if (required <= current.mails.length) {
+            return current;
+        }
+
+        int capacity = Math.max(required, current.mails.length * 2);
+        return new Snapshot(Arrays.copyOf(current.mails, capacity), Arrays.copyOf(current.sequences, capacity),
+                current.size, current.bytes, current.newest);
+    }
+
+    private record Snapshot(Mail[] mails, long[] sequences, int size, long bytes, LocalDateTime newest) { }
+
+    private record TimeKey(LocalDateTime received, long sequence) { }
+
+    private static final class MailView extends AbstractList<Mail> implements RandomAccess {
+        private final Mail[] mails;
+        private final int from;
+        private final int size;
+
+        private MailView(Snapshot snapshot, int from, int to) {
+            this.mails = snapshot.mails;
+            this.from = from;
+            this.size = to - from;
+        }
+
+        @Override
+        public Mail get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+            }
+
+            return mails[from + index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderAlreadyExistsException;
+
+import java.util.Arrays;
+import java.util.List;
+
+// One segment of an account's folder tree. Children are kept in an array sorted by name that is replaced on
+// every change, so lookups walk the tree without locking while changes are serialized by the account lock.
+// Segment names are interned with String.intern: thousands of folders named e.g. "work" share one string, and
+// the JVM drops a name from its string table once no folder uses it. Full paths are never stored but built
+// from the parent chain when asked for.
+public class FolderNode {
+
+    private static final FolderNode[] NO_CHILDREN = new FolderNode[0];
+    private static final char SEPARATOR = '/';
+    private final Folder folder = new Folder();
+    private final String name;
+    private volatile FolderNode parent;
+    private volatile FolderNode[] children = NO_CHILDREN;
+
+    FolderNode(String name) {
+        this.name = name.intern();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Folder getFolder() {
+        return folder;
+    }
+
+    public FolderNode getParent() {
+        return parent;
+    }
+
+    public List<FolderNode> getChildren() {
+        return List.of(children);
+    }
+
+    public String getPath() {
+        FolderNode current = this;
+        StringBuilder path = new StringBuilder();
+        while (current.parent != null) {
+            path.insert(0, current.name).insert(0, SEPARATOR);
+            current = current.parent;
+        }
+
+        return path.toString();
+    }
+
+    // The child named by path[start, end), found by binary search without cutting the segment out of the path.
+    public FolderNode child(String path, int start, int end) {
+        FolderNode[] current = children;
+        int low = 0;
+        int high = current.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compared = compare(current[middle].name, path, start, end);
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return current[middle];
+            }
+        }
+
+        return null;
+    }
+
+    public FolderNode child(String childName) {
+        return child(childName, 0, childName.length());
+    }
+
+    public boolean isAncestorOf(FolderNode node) {
+        for (FolderNode current = node; current != null; current = current.parent) {
+            if (current == this) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    synchronized void attach(FolderNode child) {
+        FolderNode[] current = children;
+        int position = Arrays.binarySearch(current, child, (first, second) -> first.name.compareTo(second.name));
+        if (position >= 0) {
+            throw new FolderAlreadyExistsException("This folder already exists for current account");
+        }
+
+        position = -position - 1;
+        FolderNode[] updated = new FolderNode[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, position);
+        updated[position] = child;
+        System.arraycopy(current, position, updated, position + 1, current.length - position);
+        child.parent = this;
+        children = updated;
+    }
+
+    synchronized void detach(FolderNode child) {
+        FolderNode[] current = children;
+        int position = Arrays.asList(current).indexOf(child);
+        if (position < 0) {
+            return;
+        }
+
+        FolderNode[] updated = new FolderNode[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, position);
+        System.arraycopy(current, position + 1, updated, position, updated.length - position);
+        children = updated;
+        child.parent = null;
+    }
+
+    private static int compare(String name, String path, int start, int end) {
+        int length = end - start;
+        int common = Math.min(name.length(), length);
+        for (int i = 0; i < common; i++) {
+            int compared = name.charAt(i) - path.charAt(start + i);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+
+        return name.length() - length;
+    }
+}
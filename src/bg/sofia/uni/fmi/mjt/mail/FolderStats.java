@@ -0,0 +1,15 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+
+// Sizes are the UTF-8 bytes of each mail's subject, body, sender and recipients. newestReceived is null when
+// no mail has a received time.
+public record FolderStats(long mailCount, long totalBytes, LocalDateTime newestReceived) {
+
+    public static final FolderStats EMPTY = new FolderStats(0, 0, null);
+
+    public FolderStats plus(FolderStats other) {
+        return new FolderStats(mailCount + other.mailCount, totalBytes + other.totalBytes,
+                Folder.later(newestReceived, other.newestReceived));
+    }
+}
@@ -3,26 +3,58 @@ package bg.sofia.uni.fmi.mjt.mail;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.InvalidPathException;
+import bg.sofia.uni.fmi.mjt.mail.metrics.MetricsRecorder;
+import bg.sofia.uni.fmi.mjt.mail.metrics.Operation;
 
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+// The account's folders as a tree with one node per path segment, rooted in an unnamed node above /inbox.
+// Finding a folder walks one node per segment of its path, and moving or deleting a folder only relinks or
+// unlinks its node, so no other folder is looked at.
+// Every folder keeps its own statistics; the account totals are adjusted as mails are stored or deleted, so
+// neither needs a pass over the mails. The account's newest time comes from a count of its mails per received
+// time, which deleting a folder decrements for that folder's mails only. Moving mails between folders leaves
+// the totals as they are.
 public class Inbox {
-    private Map<String, List<Mail>> mails;      //FolderName - Mails
+    private final FolderNode root;
+    private final MailIndex index;
+    private final MetricsRecorder metrics;
+    private final LongAdder mailCount = new LongAdder();
+    private final LongAdder totalBytes = new LongAdder();
+    private final ConcurrentNavigableMap<LocalDateTime, Integer> receivedTimes = new ConcurrentSkipListMap<>();
     private static final String DEFAULT_FOLDER = "/inbox";
     private static final String FOLDER_SEPARATOR = "/";
 
     public Inbox() {
-        mails = new HashMap<>();
-        mails.put(DEFAULT_FOLDER, new ArrayList<>());
+        this(MetricsRecorder.NONE);
+    }
+
+    public Inbox(MetricsRecorder metrics) {
+        this.metrics = metrics;
+        root = new FolderNode("");
+        root.attach(new FolderNode(DEFAULT_FOLDER.substring(1)));
+        index = new MailIndex();
     }
 
     public boolean checkIfFolderExists(String path) {
-        return mails.containsKey(path);
+        return find(path) != null;
+    }
+
+    // Every folder path, parents before their subfolders.
+    public List<String> getFolderPaths() {
+        return listFolders(DEFAULT_FOLDER);
     }
 
     public void createFolder(String path) {
@@ -31,53 +63,274 @@ public class Inbox {
             throw new FolderAlreadyExistsException("This folder already exists for current account");
         }
 
-        String[] subFolders = path.split(FOLDER_SEPARATOR);
-
-        if (!(FOLDER_SEPARATOR + subFolders[1]).equals(DEFAULT_FOLDER)) {
+        if (!path.startsWith(DEFAULT_FOLDER + FOLDER_SEPARATOR)) {
             throw new InvalidPathException("The path does not start from the root");
         }
         int lastIndex = path.lastIndexOf(FOLDER_SEPARATOR);
-        String subString = path.substring(0, lastIndex);
-        if (!mails.containsKey(subString)) {
+        FolderNode parent = find(path.substring(0, lastIndex));
+        if (parent == null) {
             throw new InvalidPathException("There are missing intermediate folders");
         }
+        if (lastIndex == path.length() - 1) {
+            throw new InvalidPathException("Folder name can not be empty");
+        }
 
-        mails.put(path, new ArrayList<>());
+        parent.attach(new FolderNode(path.substring(lastIndex + 1)));
+    }
+
+    // The folder and all folders below it, each parent before its subfolders.
+    public List<String> listFolders(String path) {
+        List<String> paths = new ArrayList<>();
+        forEachInSubtree(getNode(path), node -> paths.add(node.getPath()));
+        return paths;
+    }
+
+    public int countMails(String path) {
+        int[] count = new int[1];
+        forEachInSubtree(getNode(path), node -> count[0] += node.getFolder().size());
+        return count[0];
+    }
+
+    // Moves the folder with everything below it under another folder, keeping its name.
+    public void moveFolder(String path, String newParentPath) {
+        FolderNode node = getNode(path);
+        FolderNode newParent = getNode(newParentPath);
+        if (node.getParent() == root) {
+            throw new InvalidPathException("The root folder can not be moved");
+        }
+        if (node.isAncestorOf(newParent)) {
+            throw new InvalidPathException("A folder can not be moved into itself");
+        }
+        if (newParent.child(node.getName()) != null) {
+            throw new FolderAlreadyExistsException("This folder already exists for current account");
+        }
+
+        node.getParent().detach(node);
+        newParent.attach(node);
+    }
+
+    // Removes the folder, everything below it and all their mails.
+    public void deleteFolder(String path) {
+        FolderNode node = getNode(path);
+        if (node.getParent() == root) {
+            throw new InvalidPathException("The root folder can not be deleted");
+        }
+
+        node.getParent().detach(node);
+        List<Folder> deleted = new ArrayList<>();
+        forEachInSubtree(node, removed -> {
+            FolderStats stats = removed.getFolder().getStats();
+            mailCount.add(-stats.mailCount());
+            totalBytes.add(-stats.totalBytes());
+            for (Mail mail : removed.getFolder().getMails()) {
+                countReceived(mail.received(), -1);
+            }
+            deleted.add(removed.getFolder());
+        });
+        index.removeFolders(deleted);
+    }
+
+    public FolderStats getFolderStats(String folderPath) {
+        return getFolder(folderPath).getStats();
+    }
+
+    // Totals over all folders of the account.
+    public FolderStats getStats() {
+        Map.Entry<LocalDateTime, Integer> newest = receivedTimes.lastEntry();
+        return new FolderStats(mailCount.sum(), totalBytes.sum(), newest == null ? null : newest.getKey());
     }
 
     public List<Mail> getMailsFromFolder(String folderPath) {
-        if (!checkIfFolderExists(folderPath)) {
+        return getFolder(folderPath).getMails();
+    }
+
+    public Page getPage(String folderPath, String pageToken, int pageSize) {
+        return getFolder(folderPath).getPage(pageToken, pageSize);
+    }
+
+    public List<Mail> getMailsReceivedBetween(String folderPath, LocalDateTime from, LocalDateTime to) {
+        return getFolder(folderPath).getMailsReceivedBetween(from, to);
+    }
+
+    public List<Mail> getNewestMails(String folderPath, int limit) {
+        return getFolder(folderPath).getNewestMails(limit);
+    }
+
+    public void putMailInFolder(String folderPath, Mail mail) {
+        long start = metrics.start();
+        try {
+            Folder folder = getFolder(folderPath);
+            long bytes = folder.add(mail);
+            index.add(mail, folder);
+            countStored(1, bytes);
+            countReceived(mail.received(), 1);
+        } finally {
+            metrics.stop(Operation.PUT_MAIL_IN_FOLDER, start);
+        }
+    }
+
+    public void putMailsInFolder(String folderPath, List<Mail> newMails) {
+        long start = metrics.start();
+        try {
+            Folder folder = getFolder(folderPath);
+            long bytes = folder.addAll(newMails);
+            index.addAll(newMails, folder);
+            countStored(newMails.size(), bytes);
+            for (Mail mail : newMails) {
+                countReceived(mail.received(), 1);
+            }
+        } finally {
+            metrics.stop(Operation.PUT_MAIL_IN_FOLDER, start);
+        }
+    }
+
+    public List<Mail> search(SearchQuery query) {
+        if (query.folderPath() == null) {
+            return index.search(query, null);
+        }
+
+        FolderNode node = find(query.folderPath());
+        return node == null ? List.of() : index.search(query, node.getFolder());
+    }
+
+    private void countStored(int mails, long bytes) {
+        mailCount.add(mails);
+        totalBytes.add(bytes);
+    }
+
+    private void countReceived(LocalDateTime received, int delta) {
+        if (received != null) {
+            receivedTimes.merge(received, delta, (count, change) -> count + change == 0 ? null : count + change);
+        }
+    }
+
+    private Folder getFolder(String folderPath) {
+        return getNode(folderPath).getFolder();
+    }
+
+    private FolderNode getNode(String path) {
+        FolderNode node = find(path);
+        if (node == null) {
             throw new FolderNotFoundException("There is not such folder for the current account");
         }
 
-        return mails.get(folderPath);
+        return node;
     }
 
-    public void putMailInFolder(String folderPath, Mail mail) {
-        mails.get(folderPath).add(mail);
+    // One child lookup per segment; paths that are not absolute or have empty segments name no folder.
+    private FolderNode find(String path) {
+        if (path == null || !path.startsWith(FOLDER_SEPARATOR)) {
+            return null;
+        }
+
+        FolderNode node = root;
+        int start = 1;
+        while (start <= path.length() && node != null) {
+            int end = path.indexOf(FOLDER_SEPARATOR, start);
+            if (end == -1) {
+                end = path.length();
+            }
+            if (end == start) {
+                return null;
+            }
+
+            node = node.child(path, start, end);
+            start = end + 1;
+        }
+
+        return node == root ? null : node;
+    }
+
+    private static void forEachInSubtree(FolderNode node, Consumer<FolderNode> action) {
+        Deque<FolderNode> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            FolderNode current = pending.pop();
+            action.accept(current);
+            List<FolderNode> children = current.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pending.push(children.get(i));
+            }
+        }
     }
 
     public String checkForBestRule(Mail mail, Set<Rule> rule) {
-        for (Rule currRule : rule) {
-            if (currRule.checkIfMailMatchesRule(mail)) {
-                return currRule.getFolderPath();
+        long start = metrics.start();
+        try {
+            for (Rule currRule : rule) {
+                if (currRule.checkIfMailMatchesRule(mail)) {
+                    return currRule.getFolderPath();
+                }
             }
+
+            return DEFAULT_FOLDER;
+        } finally {
+            metrics.stop(Operation.CHECK_FOR_BEST_RULE, start);
         }
+    }
 
-        return DEFAULT_FOLDER;
+    public String checkForBestRule(Mail mail, AccountRules rules) {
+        return checkForBestRule(MailFeatures.of(mail), rules);
+    }
+
+    public String checkForBestRule(MailFeatures features, AccountRules rules) {
+        long start = metrics.start();
+        try {
+            Rule bestRule = rules.findBestRule(features);
+
+            return bestRule == null ? DEFAULT_FOLDER : bestRule.getFolderPath();
+        } finally {
+            metrics.stop(Operation.CHECK_FOR_BEST_RULE, start);
+        }
     }
 
     public void checkForBetterFolders(Set<Rule> rule) {
-        List<Mail> inbox = mails.get(DEFAULT_FOLDER);
-        Iterator<Mail> iterator = inbox.iterator();
-
-        while (iterator.hasNext()) {
-            Mail currMail = iterator.next();
-            String path = checkForBestRule(currMail, rule);
-            if (!path.equals(DEFAULT_FOLDER)) {
-                putMailInFolder(path, currMail);
-                iterator.remove();
+        moveMatchedMails(mail -> checkForBestRule(mail, rule));
+    }
+
+    public void checkForBetterFolders(AccountRules rules) {
+        moveMatchedMails(mail -> checkForBestRule(mail, rules));
+    }
+
+    // Every mail left in /inbox already failed all previous rules, so only the newly added rule can move it.
+    public void checkForBetterFolders(Rule newRule) {
+        String newPath = newRule.getFolderPath();
+        moveMatchedMails(mail -> newRule.checkIfMailMatchesRule(mail) ? newPath : DEFAULT_FOLDER);
+    }
+
+    // Matching runs in parallel, then all matched mails are moved in one batch: /inbox is rebuilt once
+    // instead of removing mails one by one from the middle of the list.
+    private void moveMatchedMails(Function<Mail, String> classifier) {
+        long start = metrics.start();
+        try {
+            Folder inboxFolder = getFolder(DEFAULT_FOLDER);
+            List<Mail> inbox = inboxFolder.getMails();
+            String[] paths = ClassificationTask.classifyAll(inbox, classifier);
+
+            List<Mail> remaining = new ArrayList<>();
+            Map<String, List<Mail>> moved = new LinkedHashMap<>();
+            for (int i = 0; i < paths.length; i++) {
+                if (paths[i].equals(DEFAULT_FOLDER)) {
+                    remaining.add(inbox.get(i));
+                } else {
+                    moved.computeIfAbsent(paths[i], path -> new ArrayList<>()).add(inbox.get(i));
+                }
+            }
+
+            if (moved.isEmpty()) {
+                return;
+            }
+
+            inboxFolder.replacePrefix(inbox.size(), remaining);
+            for (Map.Entry<String, List<Mail>> entry : moved.entrySet()) {
+                Folder target = getFolder(entry.getKey());
+                target.addAll(entry.getValue());
+                for (Mail mail : entry.getValue()) {
+                    index.move(mail, inboxFolder, target);
+                }
             }
+        } finally {
+            metrics.stop(Operation.CHECK_FOR_BETTER_FOLDERS, start);
         }
     }
 }
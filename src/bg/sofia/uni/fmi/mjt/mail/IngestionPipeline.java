@@ -0,0 +1,232 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Asynchronous receive path: parse -> classify -> store, each stage with its own workers and connected by
+// bounded queues. submit() blocks while the parse queue is full, which is the backpressure on producers.
+// The store stage is partitioned by account and every partition stores its mails in submission order, so
+// mails keep their order inside a folder however the parse and classify workers interleave.
+public class IngestionPipeline implements AutoCloseable {
+
+    private static final String PARSE = "parse";
+    private static final String CLASSIFY = "classify";
+    private static final String STORE = "store";
+    private final Outlook outlook;
+    private final BlockingQueue<Item> parseQueue;
+    private final BlockingQueue<Item> classifyQueue;
+    private final List<BlockingQueue<Item>> storeQueues;
+    private final long[] nextSequences;
+    private final LongAdder parsed = new LongAdder();
+    private final LongAdder classified = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final List<Thread> workers = new ArrayList<>();
+    private final CountDownLatch parseDone;
+    private final CountDownLatch classifyDone;
+    private final int parseWorkers;
+    private final int classifyWorkers;
+    private final long startNanos;
+    private boolean closed;
+
+    public IngestionPipeline(Outlook outlook, int parseWorkers, int classifyWorkers, int storeWorkers,
+                             int queueCapacity) {
+        if (parseWorkers < 1 || classifyWorkers < 1 || storeWorkers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Worker counts and queue capacity must be positive");
+        }
+
+        this.outlook = outlook;
+        parseQueue = new ArrayBlockingQueue<>(queueCapacity);
+        classifyQueue = new ArrayBlockingQueue<>(queueCapacity);
+        storeQueues = new ArrayList<>();
+        nextSequences = new long[storeWorkers];
+        this.parseWorkers = parseWorkers;
+        this.classifyWorkers = classifyWorkers;
+        parseDone = new CountDownLatch(parseWorkers);
+        classifyDone = new CountDownLatch(classifyWorkers);
+        startNanos = System.nanoTime();
+
+        for (int i = 0; i < parseWorkers; i++) {
+            start(PARSE + "-" + i, this::runParse);
+        }
+        for (int i = 0; i < classifyWorkers; i++) {
+            start(CLASSIFY + "-" + i, this::runClassify);
+        }
+        for (int i = 0; i < storeWorkers; i++) {
+            BlockingQueue<Item> storeQueue = new ArrayBlockingQueue<>(queueCapacity);
+            storeQueues.add(storeQueue);
+            start(STORE + "-" + i, () -> runStore(storeQueue));
+        }
+    }
+
+    public CompletableFuture<DeliveryResult> submit(String accountName, String mailMetadata, String mailContent)
+            throws InterruptedException {
+        Item item = new Item(accountName, mailMetadata, mailContent);
+
+        synchronized (this) {                       // Sequence numbers must follow the order items enter the queue
+            if (closed) {
+                throw new IllegalStateException("Pipeline is closed");
+            }
+
+            item.partition = accountName == null ? 0 : Math.floorMod(accountName.hashCode(), storeQueues.size());
+            item.sequence = nextSequences[item.partition];
+            parseQueue.put(item);
+            nextSequences[item.partition]++;
+        }
+
+        return item.result;
+    }
+
+    public List<StageStats> getStats() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        int storeDepth = storeQueues.stream().mapToInt(BlockingQueue::size).sum();
+
+        return List.of(
+                new StageStats(PARSE, parseQueue.size(), parsed.sum(), parsed.sum() / seconds),
+                new StageStats(CLASSIFY, classifyQueue.size(), classified.sum(), classified.sum() / seconds),
+                new StageStats(STORE, storeDepth, stored.sum(), stored.sum() / seconds));
+    }
+
+    // Stops accepting mails, lets everything already submitted flow through all stages and waits for it.
+    // An interrupted caller stops waiting and returns with its interrupt status set.
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        try {
+            for (int i = 0; i < parseWorkers; i++) {
+                parseQueue.put(Item.POISON);
+            }
+            parseDone.await();
+            for (int i = 0; i < classifyWorkers; i++) {
+                classifyQueue.put(Item.POISON);
+            }
+            classifyDone.await();
+            for (BlockingQueue<Item> storeQueue : storeQueues) {
+                storeQueue.put(Item.POISON);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void start(String name, Runnable body) {
+        Thread worker = new Thread(body, "ingestion-" + name);
+        worker.setDaemon(true);
+        workers.add(worker);
+        worker.start();
+    }
+
+    private void runParse() {
+        try {
+            Item item;
+            while ((item = parseQueue.take()) != Item.POISON) {
+                try {
+                    item.mail = outlook.parseForDelivery(item.accountName, item.mailMetadata, item.mailContent);
+                } catch (RuntimeException e) {
+                    item.failure = e;
+                }
+                parsed.increment();
+
+                if (item.failure == null) {
+                    classifyQueue.put(item);
+                } else {
+                    storeQueues.get(item.partition).put(item);   // Still needs its turn to keep the order
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            parseDone.countDown();
+        }
+    }
+
+    private void runClassify() {
+        try {
+            Item item;
+            while ((item = classifyQueue.take()) != Item.POISON) {
+                try {
+                    item.classification = outlook.classifyForDelivery(item.accountName, item.mail);
+                } catch (RuntimeException e) {
+                    item.failure = e;
+                }
+                classified.increment();
+
+                storeQueues.get(item.partition).put(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            classifyDone.countDown();
+        }
+    }
+
+    private void runStore(BlockingQueue<Item> storeQueue) {
+        PriorityQueue<Item> pending = new PriorityQueue<>(Comparator.comparingLong((Item item) -> item.sequence));
+        long nextSequence = 0;
+
+        try {
+            Item item;
+            while ((item = storeQueue.take()) != Item.POISON) {
+                pending.add(item);
+                while (!pending.isEmpty() && pending.peek().sequence == nextSequence) {
+                    store(pending.poll());
+                    nextSequence++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void store(Item item) {
+        if (item.failure == null) {
+            try {
+                String path = outlook.storeClassified(item.accountName, item.mail, item.classification);
+                item.result.complete(DeliveryResult.delivered(path));
+            } catch (RuntimeException e) {
+                item.failure = e;
+            }
+        }
+        if (item.failure != null) {
+            item.result.complete(DeliveryResult.failed(item.failure));
+        }
+
+        stored.increment();
+    }
+
+    public record StageStats(String stage, int queueDepth, long processed, double throughputPerSecond) { }
+
+    private static final class Item {
+        private static final Item POISON = new Item(null, null, null);
+        private final String accountName;
+        private final String mailMetadata;
+        private final String mailContent;
+        private final CompletableFuture<DeliveryResult> result = new CompletableFuture<>();
+        private int partition;
+        private long sequence;
+        private Mail mail;
+        private Outlook.Classification classification;
+        private RuntimeException failure;
+
+        private Item(String accountName, String mailMetadata, String mailContent) {
+            this.accountName = accountName;
+            this.mailMetadata = mailMetadata;
+            this.mailContent = mailContent;
+        }
+    }
+}
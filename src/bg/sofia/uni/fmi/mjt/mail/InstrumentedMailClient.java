@@ -0,0 +1,221 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.metrics.MetricsRecorder;
+import bg.sofia.uni.fmi.mjt.mail.metrics.Operation;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+// Times every call of a MailClient, failed calls included. Outlook times its internal stages itself when it
+// is given the same recorder; without this wrapper its public methods are not measured at all.
+// sendMailAsync is timed until the future is returned, i.e. the /sent copy, not the deliveries.
+public class InstrumentedMailClient implements MailClient {
+
+    private final MailClient client;
+    private final MetricsRecorder metrics;
+
+    public InstrumentedMailClient(MailClient client, MetricsRecorder metrics) {
+        if (client == null || metrics == null) {
+            throw new IllegalArgumentException("Client and metrics recorder can not be null");
+        }
+
+        this.client = client;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Account addNewAccount(String accountName, String email) {
+        long start = metrics.start();
+        try {
+            return client.addNewAccount(accountName, email);
+        } finally {
+            metrics.stop(Operation.ADD_NEW_ACCOUNT, start);
+        }
+    }
+
+    @Override
+    public void createFolder(String accountName, String path) {
+        long start = metrics.start();
+        try {
+            client.createFolder(accountName, path);
+        } finally {
+            metrics.stop(Operation.CREATE_FOLDER, start);
+        }
+    }
+
+    @Override
+    public void moveFolder(String accountName, String path, String newParentPath) {
+        long start = metrics.start();
+        try {
+            client.moveFolder(accountName, path, newParentPath);
+        } finally {
+            metrics.stop(Operation.MOVE_FOLDER, start);
+        }
+    }
+
+    @Override
+    public void deleteFolder(String accountName, String path) {
+        long start = metrics.start();
+        try {
+            client.deleteFolder(accountName, path);
+        } finally {
+            metrics.stop(Operation.DELETE_FOLDER, start);
+        }
+    }
+
+    @Override
+    public List<String> listFolders(String accountName, String path) {
+        long start = metrics.start();
+        try {
+            return client.listFolders(accountName, path);
+        } finally {
+            metrics.stop(Operation.LIST_FOLDERS, start);
+        }
+    }
+
+    @Override
+    public int countMails(String accountName, String path) {
+        long start = metrics.start();
+        try {
+            return client.countMails(accountName, path);
+        } finally {
+            metrics.stop(Operation.COUNT_MAILS, start);
+        }
+    }
+
+    @Override
+    public FolderStats getFolderStats(String accountName, String folderPath) {
+        long start = metrics.start();
+        try {
+            return client.getFolderStats(accountName, folderPath);
+        } finally {
+            metrics.stop(Operation.GET_FOLDER_STATS, start);
+        }
+    }
+
+    @Override
+    public FolderStats getAccountStats(String accountName) {
+        long start = metrics.start();
+        try {
+            return client.getAccountStats(accountName);
+        } finally {
+            metrics.stop(Operation.GET_ACCOUNT_STATS, start);
+        }
+    }
+
+    @Override
+    public void addRule(String accountName, String folderPath, String ruleDefinition, int priority) {
+        long start = metrics.start();
+        try {
+            client.addRule(accountName, folderPath, ruleDefinition, priority);
+        } finally {
+            metrics.stop(Operation.ADD_RULE, start);
+        }
+    }
+
+    @Override
+    public void receiveMail(String accountName, String mailMetadata, String mailContent) {
+        long start = metrics.start();
+        try {
+            client.receiveMail(accountName, mailMetadata, mailContent);
+        } finally {
+            metrics.stop(Operation.RECEIVE_MAIL, start);
+        }
+    }
+
+    @Override
+    public List<DeliveryResult> receiveMails(String accountName, Collection<RawMail> mails) {
+        long start = metrics.start();
+        try {
+            return client.receiveMails(accountName, mails);
+        } finally {
+            metrics.stop(Operation.RECEIVE_MAILS, start);
+        }
+    }
+
+    @Override
+    public List<DeliveryResult> receiveMails(String accountName, Stream<RawMail> mails) {
+        long start = metrics.start();
+        try {
+            return client.receiveMails(accountName, mails);
+        } finally {
+            metrics.stop(Operation.RECEIVE_MAILS, start);
+        }
+    }
+
+    @Override
+    public Collection<Mail> getMailsFromFolder(String account, String folderPath) {
+        long start = metrics.start();
+        try {
+            return client.getMailsFromFolder(account, folderPath);
+        } finally {
+            metrics.stop(Operation.GET_MAILS_FROM_FOLDER, start);
+        }
+    }
+
+    @Override
+    public Page getMailsFromFolder(String account, String folderPath, String pageToken, int pageSize) {
+        long start = metrics.start();
+        try {
+            return client.getMailsFromFolder(account, folderPath, pageToken, pageSize);
+        } finally {
+            metrics.stop(Operation.GET_PAGE, start);
+        }
+    }
+
+    @Override
+    public List<Mail> getMailsReceivedBetween(String account, String folderPath, LocalDateTime from,
+                                              LocalDateTime to) {
+        long start = metrics.start();
+        try {
+            return client.getMailsReceivedBetween(account, folderPath, from, to);
+        } finally {
+            metrics.stop(Operation.GET_MAILS_RECEIVED_BETWEEN, start);
+        }
+    }
+
+    @Override
+    public List<Mail> getNewestMails(String account, String folderPath, int limit) {
+        long start = metrics.start();
+        try {
+            return client.getNewestMails(account, folderPath, limit);
+        } finally {
+            metrics.stop(Operation.GET_NEWEST_MAILS, start);
+        }
+    }
+
+    @Override
+    public void sendMail(String accountName, String mailMetadata, String mailContent) {
+        long start = metrics.start();
+        try {
+            client.sendMail(accountName, mailMetadata, mailContent);
+        } finally {
+            metrics.stop(Operation.SEND_MAIL, start);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, DeliveryResult>> sendMailAsync(String accountName, String mailMetadata,
+                                                                        String mailContent, int maxConcurrency) {
+        long start = metrics.start();
+        try {
+            return client.sendMailAsync(accountName, mailMetadata, mailContent, maxConcurrency);
+        } finally {
+            metrics.stop(Operation.SEND_MAIL_ASYNC, start);
+        }
+    }
+
+    @Override
+    public List<Mail> search(String accountName, SearchQuery query) {
+        long start = metrics.start();
+        try {
+            return client.search(accountName, query);
+        } finally {
+            metrics.stop(Operation.SEARCH, start);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.BitSet;
+
+// Keywords are first checked against the pair signatures of the mail's features, which reject most of them
+// without reading the text. Only a keyword that passes triggers the automaton scan of the subject or body.
+public class KeywordHits implements KeywordScan {
+
+    private final KeywordMatcher matcher;
+    private final MailFeatures features;
+    private final Mail mail;
+    private BitSet subjectHits;
+    private BitSet bodyHits;
+
+    public KeywordHits(KeywordMatcher matcher, MailFeatures features) {
+        this.matcher = matcher;
+        this.features = features;
+        this.mail = features.mail();
+    }
+
+    @Override
+    public boolean subjectContains(String keyword) {
+        if (!features.subjectMayContain(keyword)) {
+            return false;
+        }
+
+        int id = matcher.getKeywordId(keyword);
+        if (id == -1) {
+            return mail.subject().contains(keyword);      // Not compiled into the automaton
+        }
+
+        return subjectHits().get(id);
+    }
+
+    @Override
+    public boolean subjectOrBodyContains(String keyword) {
+        return subjectContains(keyword) || bodyContains(keyword);
+    }
+
+    private boolean bodyContains(String keyword) {
+        if (!features.bodyMayContain(keyword)) {
+            return false;
+        }
+
+        int id = matcher.getKeywordId(keyword);
+        if (id == -1) {
+            return mail.body().contains(keyword);
+        }
+
+        return bodyHits().get(id);
+    }
+
+    private BitSet subjectHits() {
+        if (subjectHits == null) {
+            subjectHits = matcher.scan(mail.subject());
+        }
+
+        return subjectHits;
+    }
+
+    private BitSet bodyHits() {                           // The body is scanned only if some rule needs it
+        if (bodyHits == null) {
+            bodyHits = matcher.scan(mail.body());
+        }
+
+        return bodyHits;
+    }
+}
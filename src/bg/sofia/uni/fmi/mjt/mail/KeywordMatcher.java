@@ -0,0 +1,182 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+// Aho-Corasick automaton over all keywords of an account's rules. A single pass over a text reports every
+// keyword that occurs in it as a substring, so the text is scanned once no matter how many rules there are.
+public class KeywordMatcher {
+
+    private static final int[] NO_OUTPUTS = new int[0];
+    private final Map<String, Integer> keywordIds;
+    private final Node root;
+    private int emptyKeywordId = -1;
+
+    public KeywordMatcher() {
+        keywordIds = new HashMap<>();
+        root = new Node();
+    }
+
+    public void addAll(Collection<String> keywords) {
+        boolean changed = false;
+        for (String keyword : keywords) {
+            changed |= insert(keyword);
+        }
+
+        if (changed) {
+            buildFailureLinks();
+        }
+    }
+
+    public void add(String keyword) {
+        if (insert(keyword)) {
+            buildFailureLinks();
+        }
+    }
+
+    public int getKeywordId(String keyword) {
+        Integer id = keywordIds.get(keyword);
+        return id == null ? -1 : id;
+    }
+
+    public int size() {
+        return keywordIds.size();
+    }
+
+    public BitSet scan(String text) {
+        BitSet found = new BitSet(keywordIds.size());
+        if (emptyKeywordId != -1) {
+            found.set(emptyKeywordId);           // Every text contains the empty string
+        }
+
+        Node state = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Node next = state.child(c);
+            while (next == null && state != root) {
+                state = state.fail;
+                next = state.child(c);
+            }
+            state = next == null ? root : next;
+
+            for (int output : state.outputs) {
+                found.set(output);
+            }
+        }
+
+        return found;
+    }
+
+    private boolean insert(String keyword) {
+        if (keywordIds.containsKey(keyword)) {
+            return false;
+        }
+
+        int id = keywordIds.size();
+        keywordIds.put(keyword, id);
+        if (keyword.isEmpty()) {
+            emptyKeywordId = id;
+            return false;
+        }
+
+        Node current = root;
+        for (int i = 0; i < keyword.length(); i++) {
+            current = current.childOrCreate(keyword.charAt(i));
+        }
+        current.keywordId = id;
+
+        return true;
+    }
+
+    // New keywords only add trie nodes, but a new node can become the failure target of existing ones,
+    // so the links and the merged outputs are recomputed breadth-first over the whole trie.
+    private void buildFailureLinks() {
+        Queue<Node> queue = new ArrayDeque<>();
+        root.fail = root;
+        root.outputs = NO_OUTPUTS;
+
+        for (int i = 0; i < root.size; i++) {
+            Node child = root.children[i];
+            child.fail = root;
+            child.outputs = child.ownOutputs();
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            Node current = queue.poll();
+            for (int i = 0; i < current.size; i++) {
+                char c = current.keys[i];
+                Node child = current.children[i];
+
+                Node fallback = current.fail;
+                while (fallback != root && fallback.child(c) == null) {
+                    fallback = fallback.fail;
+                }
+                Node target = fallback.child(c);
+                child.fail = target == null || target == child ? root : target;
+                child.outputs = merge(child.ownOutputs(), child.fail.outputs);
+
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int[] merge(int[] own, int[] inherited) {
+        if (inherited.length == 0) {
+            return own;
+        }
+        if (own.length == 0) {
+            return inherited;
+        }
+
+        int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+        System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+        return merged;
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int size;
+        private int keywordId = -1;
+        private Node fail;
+        private int[] outputs = NO_OUTPUTS;
+
+        private Node child(char c) {
+            int idx = Arrays.binarySearch(keys, 0, size, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        private Node childOrCreate(char c) {
+            int idx = Arrays.binarySearch(keys, 0, size, c);
+            if (idx >= 0) {
+                return children[idx];
+            }
+
+            int insertAt = -idx - 1;
+            if (size == keys.length) {
+                int capacity = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, insertAt, keys, insertAt + 1, size - insertAt);
+            System.arraycopy(children, insertAt, children, insertAt + 1, size - insertAt);
+
+            Node created = new Node();
+            keys[insertAt] = c;
+            children[insertAt] = created;
+            size++;
+
+            return created;
+        }
+
+        private int[] ownOutputs() {
+            return keywordId == -1 ? NO_OUTPUTS : new int[] {keywordId};
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+public interface KeywordScan {
+
+    boolean subjectContains(String keyword);
+
+    boolean subjectOrBodyContains(String keyword);
+
+}
@@ -1,6 +1,11 @@
 package bg.sofia.uni.fmi.mjt.mail;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface MailClient {
 
@@ -8,12 +13,45 @@ public interface MailClient {
 
     void createFolder(String accountName, String path);
 
+    void moveFolder(String accountName, String path, String newParentPath);
+
+    void deleteFolder(String accountName, String path);
+
+    List<String> listFolders(String accountName, String path);
+
+    int countMails(String accountName, String path);
+
+    FolderStats getFolderStats(String accountName, String folderPath);
+
+    FolderStats getAccountStats(String accountName);
+
     void addRule(String accountName, String folderPath, String ruleDefinition, int priority);
 
     void receiveMail(String accountName, String mailMetadata, String mailContent);
 
+    List<DeliveryResult> receiveMails(String accountName, Collection<RawMail> mails);
+
+    default List<DeliveryResult> receiveMails(String accountName, Stream<RawMail> mails) {
+        if (mails == null) {
+            throw new IllegalArgumentException("Mails can not be null");
+        }
+
+        return receiveMails(accountName, mails.toList());
+    }
+
     Collection<Mail> getMailsFromFolder(String account, String folderPath);
 
+    Page getMailsFromFolder(String account, String folderPath, String pageToken, int pageSize);
+
+    List<Mail> getMailsReceivedBetween(String account, String folderPath, LocalDateTime from, LocalDateTime to);
+
+    List<Mail> getNewestMails(String account, String folderPath, int limit);
+
     void sendMail(String accountName, String mailMetadata, String mailContent);
 
-}
\ No newline at end of file
+    CompletableFuture<Map<String, DeliveryResult>> sendMailAsync(String accountName, String mailMetadata,
+                                                                 String mailContent, int maxConcurrency);
+
+    List<Mail> search(String accountName, SearchQuery query);
+
+}
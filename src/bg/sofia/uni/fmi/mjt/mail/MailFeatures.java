@@ -0,0 +1,90 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.Set;
+
+// What rules look at in a mail, prepared once when the mail is ingested and then shared by every rule of every
+// account it is delivered to. Subject and body each get a 4096-bit signature of the character pairs they
+// contain: a keyword with a pair missing from the signature can not be a substring of the text and is
+// rejected without searching it. Keywords that pass still have to be found in the text, so matching keeps
+// exact substring semantics. The body signature is built by the first rule that looks at the body; deliveries
+// racing on it may both build it, which is harmless as the result is the same.
+public final class MailFeatures implements KeywordScan {
+
+    private static final int SIGNATURE_BITS = 4096;
+    private static final int SIGNATURE_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SIGNATURE_BITS);
+    private final Mail mail;
+    private final String sender;
+    private final long[] subjectPairs;
+    private volatile long[] bodyPairs;
+
+    private MailFeatures(Mail mail) {
+        this.mail = mail;
+        this.sender = mail.sender().emailAddress();
+        this.subjectPairs = signature(mail.subject());
+    }
+
+    public static MailFeatures of(Mail mail) {
+        return new MailFeatures(mail);
+    }
+
+    public Mail mail() {
+        return mail;
+    }
+
+    public String sender() {
+        return sender;
+    }
+
+    public Set<String> recipients() {
+        return mail.recipients();
+    }
+
+    public boolean subjectMayContain(String keyword) {
+        return mayContain(subjectPairs, keyword);
+    }
+
+    public boolean bodyMayContain(String keyword) {
+        long[] pairs = bodyPairs;
+        if (pairs == null) {
+            pairs = signature(mail.body());
+            bodyPairs = pairs;
+        }
+
+        return mayContain(pairs, keyword);
+    }
+
+    @Override
+    public boolean subjectContains(String keyword) {
+        return subjectMayContain(keyword) && mail.subject().contains(keyword);
+    }
+
+    @Override
+    public boolean subjectOrBodyContains(String keyword) {
+        return subjectContains(keyword) || bodyMayContain(keyword) && mail.body().contains(keyword);
+    }
+
+    private static long[] signature(String text) {
+        long[] bits = new long[SIGNATURE_BITS / Long.SIZE];
+        for (int i = 1; i < text.length(); i++) {
+            int pair = pair(text.charAt(i - 1), text.charAt(i));
+            bits[pair >>> 6] |= 1L << pair;
+        }
+
+        return bits;
+    }
+
+    private static boolean mayContain(long[] bits, String keyword) {
+        for (int i = 1; i < keyword.length(); i++) {
+            int pair = pair(keyword.charAt(i - 1), keyword.charAt(i));
+            if ((bits[pair >>> 6] & 1L << pair) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int pair(char first, char second) {
+        return (first << 16 | second) * 0x9E3779B1 >>> SIGNATURE_SHIFT;
+    }
+}
@@ -0,0 +1,338 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index over the mails of one account. Every stored mail becomes a document with an ascending id;
+// words of the subject and body, the sender and every recipient map to posting lists of those ids, and
+// received times map to the ids received then. A query intersects the lists of its conditions starting
+// from the shortest one, so its cost follows the rarest condition rather than the size of the mailbox.
+// Documents remember the Folder instance they are in, not its path, so moving a folder with its subfolders
+// leaves the index untouched; moving a mail only changes the folder of its document. Deleting folders drops
+// their documents at once, found through the folders' own mails, so their mails are no longer referenced;
+// their ids stay in the posting lists until more than half of the documents are gone, and the index is then
+// rebuilt from the remaining ones.
+public class MailIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private final Map<String, PostingList> words = new HashMap<>();
+    private final Map<String, PostingList> senders = new HashMap<>();
+    private final Map<String, PostingList> recipients = new HashMap<>();
+    private final NavigableMap<LocalDateTime, PostingList> received = new TreeMap<>();
+    private final Map<Mail, int[]> documentsOfMail = new IdentityHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Mail[] documents = new Mail[INITIAL_CAPACITY];
+    private Folder[] folders = new Folder[INITIAL_CAPACITY];
+    private int documentCount;
+    private int removedCount;
+
+    public void add(Mail mail, Folder folder) {
+        lock.writeLock().lock();
+        try {
+            index(mail, folder);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<Mail> mails, Folder folder) {
+        lock.writeLock().lock();
+        try {
+            for (Mail mail : mails) {
+                index(mail, folder);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Moves documents of this exact mail instance that are in the source folder.
+    public void move(Mail mail, Folder from, Folder to) {
+        lock.writeLock().lock();
+        try {
+            int[] docs = documentsOfMail.get(mail);
+            if (docs == null) {
+                return;
+            }
+
+            for (int doc : docs) {
+                if (folders[doc] == from) {
+                    folders[doc] = to;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drops the documents of the given folders' mails; documents of other folders are not looked at.
+    public void removeFolders(Collection<Folder> removed) {
+        lock.writeLock().lock();
+        try {
+            for (Folder folder : removed) {
+                for (Mail mail : folder.getMails()) {
+                    int[] docs = documentsOfMail.get(mail);
+                    if (docs == null) {
+                        continue;
+                    }
+
+                    for (int doc : docs) {
+                        if (folders[doc] == folder) {
+                            forget(doc);
+                        }
+                    }
+                }
+            }
+
+            if (removedCount > documentCount / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentCount - removedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The query's folder path is resolved by the caller: folder narrows the result down to it, null searches
+    // every folder.
+    public List<Mail> search(SearchQuery query, Folder folder) {
+        lock.readLock().lock();
+        try {
+            List<PostingList> lists = new ArrayList<>();
+            for (String term : query.terms()) {
+                List<String> termWords = tokenize(term);
+                if (termWords.isEmpty()) {
+                    return List.of();               // A term without words is in no mail's word index
+                }
+                for (String word : termWords) {
+                    lists.add(words.get(word));
+                }
+            }
+            if (query.sender() != null) {
+                lists.add(senders.get(query.sender()));
+            }
+            if (query.recipient() != null) {
+                lists.add(recipients.get(query.recipient()));
+            }
+            if (lists.contains(null)) {
+                return List.of();                   // A condition nobody matches
+            }
+
+            if (lists.isEmpty()) {
+                return query.from() == null && query.to() == null
+                        ? scanAll(query, folder)
+                        : scanDateRange(query, folder);
+            }
+
+            return intersect(lists, query, folder);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void index(Mail mail, Folder folder) {
+        if (documentCount == documents.length) {
+            documents = Arrays.copyOf(documents, documentCount * 2);
+            folders = Arrays.copyOf(folders, documentCount * 2);
+        }
+
+        int doc = documentCount++;
+        documents[doc] = mail;
+        folders[doc] = folder;
+
+        int[] previous = documentsOfMail.get(mail);
+        if (previous == null) {
+            documentsOfMail.put(mail, new int[] {doc});
+        } else {
+            int[] docs = Arrays.copyOf(previous, previous.length + 1);
+            docs[previous.length] = doc;
+            documentsOfMail.put(mail, docs);
+        }
+
+        for (String word : tokenize(mail.subject())) {
+            words.computeIfAbsent(word, key -> new PostingList()).add(doc);
+        }
+        for (String word : tokenize(mail.body())) {
+            words.computeIfAbsent(word, key -> new PostingList()).add(doc);
+        }
+        if (mail.sender() != null && mail.sender().emailAddress() != null) {
+            senders.computeIfAbsent(mail.sender().emailAddress(), key -> new PostingList()).add(doc);
+        }
+        for (String recipient : mail.recipients()) {
+            recipients.computeIfAbsent(recipient, key -> new PostingList()).add(doc);
+        }
+        if (mail.received() != null) {
+            received.computeIfAbsent(mail.received(), key -> new PostingList()).add(doc);
+        }
+    }
+
+    private void forget(int doc) {
+        Mail mail = documents[doc];
+        int[] docs = documentsOfMail.get(mail);
+        if (docs.length == 1) {
+            documentsOfMail.remove(mail);
+        } else {
+            int[] remaining = new int[docs.length - 1];
+            int idx = 0;
+            for (int other : docs) {
+                if (other != doc) {
+                    remaining[idx++] = other;
+                }
+            }
+            documentsOfMail.put(mail, remaining);
+        }
+
+        documents[doc] = null;
+        folders[doc] = null;
+        removedCount++;
+    }
+
+    // Re-indexes the remaining documents in their order, which gives them new dense ids.
+    private void compact() {
+        Mail[] oldDocuments = documents;
+        Folder[] oldFolders = folders;
+        int oldCount = documentCount;
+
+        int capacity = Math.max(INITIAL_CAPACITY, 2 * (oldCount - removedCount));
+        documents = new Mail[capacity];
+        folders = new Folder[capacity];
+        documentCount = 0;
+        removedCount = 0;
+        words.clear();
+        senders.clear();
+        recipients.clear();
+        received.clear();
+        documentsOfMail.clear();
+
+        for (int doc = 0; doc < oldCount; doc++) {
+            if (oldDocuments[doc] != null) {
+                index(oldDocuments[doc], oldFolders[doc]);
+            }
+        }
+    }
+
+    // Leapfrog intersection: the shortest list proposes a document, every other list skips ahead to it, and
+    // whenever one of them overshoots the proposal moves to where it landed.
+    private List<Mail> intersect(List<PostingList> lists, SearchQuery query, Folder folder) {
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        PostingList.Cursor[] cursors = new PostingList.Cursor[lists.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = lists.get(i).cursor();
+        }
+
+        List<Mail> found = new ArrayList<>();
+        int doc = cursors[0].nextDoc();
+        while (doc != PostingList.NO_MORE_DOCS) {
+            int candidate = doc;
+            for (int i = 1; i < cursors.length && candidate == doc; i++) {
+                candidate = cursors[i].advance(doc);
+            }
+
+            if (candidate == doc) {
+                collect(doc, query, folder, found);
+                doc = cursors[0].nextDoc();
+            } else {
+                doc = candidate == PostingList.NO_MORE_DOCS ? candidate : cursors[0].advance(candidate);
+            }
+        }
+
+        return found;
+    }
+
+    private List<Mail> scanDateRange(SearchQuery query, Folder folder) {
+        NavigableMap<LocalDateTime, PostingList> range = received;
+        if (query.from() != null) {
+            range = range.tailMap(query.from(), true);
+        }
+        if (query.to() != null) {
+            range = range.headMap(query.to(), true);
+        }
+
+        int total = 0;
+        for (PostingList list : range.values()) {
+            total += list.size();
+        }
+
+        int[] docs = new int[total];
+        int idx = 0;
+        for (PostingList list : range.values()) {
+            PostingList.Cursor cursor = list.cursor();
+            for (int doc = cursor.nextDoc(); doc != PostingList.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+                docs[idx++] = doc;
+            }
+        }
+        Arrays.sort(docs);                          // Back to arrival order
+
+        List<Mail> found = new ArrayList<>();
+        for (int doc : docs) {
+            collect(doc, query, folder, found);
+        }
+        return found;
+    }
+
+    private List<Mail> scanAll(SearchQuery query, Folder folder) {
+        List<Mail> found = new ArrayList<>();
+        for (int doc = 0; doc < documentCount; doc++) {
+            collect(doc, query, folder, found);
+        }
+
+        return found;
+    }
+
+    private void collect(int doc, SearchQuery query, Folder folder, List<Mail> found) {
+        if (documents[doc] == null || folder != null && folders[doc] != folder) {
+            return;
+        }
+
+        LocalDateTime time = documents[doc].received();
+        if (query.from() != null && (time == null || time.isBefore(query.from()))) {
+            return;
+        }
+        if (query.to() != null && (time == null || time.isAfter(query.to()))) {
+            return;
+        }
+
+        found.add(documents[doc]);
+    }
+
+    // Words are maximal runs of letters and digits, lower-cased.
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start == -1) {
+                start = i;
+            } else if (!wordChar && start != -1) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+}
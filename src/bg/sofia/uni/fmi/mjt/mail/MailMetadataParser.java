@@ -0,0 +1,157 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// Single pass over the metadata lines: no regex split, no intermediate token arrays and one shared formatter.
+public class MailMetadataParser {
+
+    private static final String SENDER = "sender";
+    private static final String SUBJECT = "subject";
+    private static final String RECIPIENTS = "recipients";
+    private static final String RECEIVED = "received";
+    private static final char KEY_SEPARATOR = ':';
+    private static final char CSV_SEPARATOR = ',';
+    private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(DATE_TIME_FORMAT);
+    private final AccountRegistry accounts;
+    private final BodyStore bodies;
+
+    public MailMetadataParser(AccountRegistry accounts) {
+        this(accounts, null);
+    }
+
+    public MailMetadataParser(AccountRegistry accounts, BodyStore bodies) {
+        this.accounts = accounts;
+        this.bodies = bodies;
+    }
+
+    public Mail parse(String mailMetadata, String mailBody) {
+        return parse(mailMetadata, mailBody, null);
+    }
+
+    // The resulting Mail is immutable, so a single instance can be shared by every recipient it is delivered to.
+    // A non-null senderOverride replaces whatever sender the metadata names, e.g. the account sending the mail.
+    public Mail parse(String mailMetadata, String mailBody, String senderOverride) {
+        String senderMail = "";
+        String subject = "";
+        Set<String> recipients = new HashSet<>();
+        LocalDateTime received = null;
+
+        int length = mailMetadata.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && mailMetadata.charAt(lineEnd) != '\n' && mailMetadata.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            int separator = mailMetadata.indexOf(KEY_SEPARATOR, lineStart);
+            if (separator != -1 && separator < lineEnd) {
+                int keyStart = skipWhitespace(mailMetadata, lineStart, separator);
+                int keyEnd = trimWhitespace(mailMetadata, keyStart, separator);
+                int valueStart = skipWhitespace(mailMetadata, separator + 1, lineEnd);
+                int valueEnd = trimWhitespace(mailMetadata, valueStart, lineEnd);
+
+                if (isKey(mailMetadata, keyStart, keyEnd, SENDER)) {
+                    senderMail = mailMetadata.substring(valueStart, valueEnd);
+                } else if (isKey(mailMetadata, keyStart, keyEnd, SUBJECT)) {
+                    subject = mailMetadata.substring(valueStart, valueEnd);
+                } else if (isKey(mailMetadata, keyStart, keyEnd, RECIPIENTS)) {
+                    parseRecipients(mailMetadata, valueStart, valueEnd, recipients);
+                } else if (isKey(mailMetadata, keyStart, keyEnd, RECEIVED)) {
+                    received = parseDateTime(mailMetadata.substring(valueStart, valueEnd));
+                }
+            }
+
+            lineStart = lineEnd + 1;
+        }
+
+        if (senderOverride != null) {
+            senderMail = senderOverride;
+        }
+        Account sender = accounts.getByEmail(senderMail);
+        String senderName = sender == null ? null : sender.name();
+
+        String body = bodies == null ? mailBody : bodies.intern(mailBody);
+        return new Mail(new Account(senderMail, senderName), Collections.unmodifiableSet(recipients), subject,
+                body, received);
+    }
+
+    // Fast path for the fixed "yyyy-MM-dd HH:mm" layout; anything else goes through the shared formatter. So do
+    // out-of-range fields, which the formatter's smart resolver either rejects or adjusts, e.g. Feb 30 to Feb 28.
+    public static LocalDateTime parseDateTime(String value) {
+        if (value.length() != DATE_TIME_FORMAT.length() || value.charAt(4) != '-' || value.charAt(7) != '-'
+                || value.charAt(10) != ' ' || value.charAt(13) != ':') {
+            return LocalDateTime.parse(value, FORMATTER);
+        }
+
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 7);
+        int day = digits(value, 8, 10);
+        int hour = digits(value, 11, 13);
+        int minute = digits(value, 14, 16);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || day > Month.of(month).length(Year.isLeap(year))) {
+            return LocalDateTime.parse(value, FORMATTER);
+        }
+
+        return LocalDateTime.of(year, month, day, hour, minute);
+    }
+
+    private static void parseRecipients(String text, int from, int to, Set<String> recipients) {
+        int start = from;
+        while (start <= to) {
+            int end = text.indexOf(CSV_SEPARATOR, start);
+            if (end == -1 || end > to) {
+                end = to;
+            }
+
+            int recipientStart = skipWhitespace(text, start, end);
+            int recipientEnd = trimWhitespace(text, recipientStart, end);
+            if (recipientStart < recipientEnd) {
+                recipients.add(text.substring(recipientStart, recipientEnd));
+            }
+
+            start = end + 1;
+        }
+    }
+
+    private static boolean isKey(String text, int from, int to, String key) {
+        return to - from == key.length() && text.regionMatches(from, key, 0, key.length());
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    private static int skipWhitespace(String text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+
+        return from;
+    }
+
+    private static int trimWhitespace(String text, int from, int to) {
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+
+        return to;
+    }
+}
@@ -1,45 +1,146 @@
 package bg.sofia.uni.fmi.mjt.mail;
 
-import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountNotFoundException;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderInUseException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderNotFoundException;
-
+import bg.sofia.uni.fmi.mjt.mail.metrics.MetricsRecorder;
+import bg.sofia.uni.fmi.mjt.mail.metrics.Operation;
+import bg.sofia.uni.fmi.mjt.mail.storage.AccountSnapshot;
+import bg.sofia.uni.fmi.mjt.mail.storage.FsyncPolicy;
+import bg.sofia.uni.fmi.mjt.mail.storage.LogRecord;
+import bg.sofia.uni.fmi.mjt.mail.storage.OutlookSnapshot;
+import bg.sofia.uni.fmi.mjt.mail.storage.SnapshotFile;
+import bg.sofia.uni.fmi.mjt.mail.storage.WriteAheadLog;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
-public class Outlook implements MailClient {
+public class Outlook implements MailClient, AutoCloseable {
 
     private static final int MAX_PRIORITY = 1;
     private static final int MIN_PRIORITY = 10;
-    private static final String MAIL_METADATA_REGEX = "[:\\r?\\n|\\r]+";
-    private static final String SENDER = "sender:";
-    private static final String MAIL_SENDER = "sender";
-    private static final String SUBJECT = "subject";
-    private static final String RECIPIENTS = "recipients";
-    private static final String RECEIVED = "received";
-    private static final String CSV_SEPARATOR = ",";
-    private static final String TIME_SEPARATOR = ":";
-    private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm";
+    private static final int PARALLEL_BATCH_THRESHOLD = 1024;
+    private static final int DELIVERY_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
     private static final String DEFAULT_FOLDER = "/inbox";
     private static final String SENT_FOLDER = "/sent";
-    private final Set<Account> allAccounts;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private final AccountRegistry accounts;
+    private final BodyStore bodies;
+    private final MailMetadataParser metadataParser;
     private final Map<String, Inbox> receivedMails;
-    private final Map<String, List<Mail>> sentMails;
-    private final Map<String, Set<Rule>> rules;
+    private final Map<String, Folder> sentMails;
+    private final Map<String, AccountRules> rules;
+    private final AccountLocks locks;
+    private final ExecutorService deliveryExecutor;
+    private final boolean ownsDeliveryExecutor;
+    private final MetricsRecorder metrics;
+    private final WriteAheadLog log;
+    private final Path snapshotFile;
 
     public Outlook() {
-        allAccounts = new HashSet<>();
-        receivedMails = new HashMap<>();
-        sentMails = new HashMap<>();
-        rules = new HashMap<>();
+        this(null, null, null, MetricsRecorder.NONE);
+    }
+
+    // The executor stays the caller's: close() does not shut it down.
+    public Outlook(ExecutorService deliveryExecutor) {
+        this(requireExecutor(deliveryExecutor), null, null, MetricsRecorder.NONE);
+    }
+
+    // Times the internal stages of every mail: parsing, classification, storing and reclassification. Wrap the
+    // client in an InstrumentedMailClient with the same recorder to time the public operations as well.
+    public Outlook(MetricsRecorder metrics) {
+        this(null, null, null, metrics);
+    }
+
+    // Durable mode: the state is rebuilt from the last snapshot and the log file, then every mutation is
+    // appended to the log. The snapshot is kept next to the log, in a file with the log's name plus ".snapshot".
+    public Outlook(Path logFile, FsyncPolicy fsyncPolicy) {
+        this(null, logFile, fsyncPolicy, MetricsRecorder.NONE);
+    }
+
+    public Outlook(Path logFile, FsyncPolicy fsyncPolicy, MetricsRecorder metrics) {
+        this(null, logFile, fsyncPolicy, metrics);
+    }
+
+    // Changing an account's folders or rules takes that account's stripe exclusively, classifying and storing
+    // mail takes it shared. Reads of folders never lock: they see an immutable snapshot of the folder.
+    // Without a delivery executor the client creates its own and shuts it down on close().
+    private Outlook(ExecutorService deliveryExecutor, Path logFile, FsyncPolicy fsyncPolicy,
+                    MetricsRecorder metrics) {
+        if (logFile == null ^ fsyncPolicy == null) {
+            throw new IllegalArgumentException("Log file and fsync policy can not be null");
+        }
+        if (metrics == null) {
+            throw new IllegalArgumentException("Metrics recorder can not be null");
+        }
+
+        accounts = new AccountRegistry();
+        bodies = new BodyStore();
+        metadataParser = new MailMetadataParser(accounts, bodies);
+        receivedMails = new ConcurrentHashMap<>();
+        sentMails = new ConcurrentHashMap<>();
+        rules = new ConcurrentHashMap<>();
+        locks = new AccountLocks();
+        this.ownsDeliveryExecutor = deliveryExecutor == null;
+        this.deliveryExecutor = ownsDeliveryExecutor ? newDeliveryExecutor() : deliveryExecutor;
+        this.metrics = metrics;
+
+        if (logFile == null) {
+            log = null;
+            snapshotFile = null;
+            return;
+        }
+
+        snapshotFile = logFile.resolveSibling(logFile.getFileName() + SNAPSHOT_SUFFIX);
+        long snapshotEpoch = -1;
+        if (Files.exists(snapshotFile)) {
+            OutlookSnapshot snapshot = SnapshotFile.read(snapshotFile);
+            load(snapshot);
+            snapshotEpoch = snapshot.logEpoch();
+        }
+
+        WriteAheadLog.Recovery recovery = WriteAheadLog.recover(logFile);
+        if (recovery.epoch() > snapshotEpoch) {
+            replay(recovery.records());            // Runs before the log is set, so nothing is logged twice
+        }
+
+        log = WriteAheadLog.open(logFile, fsyncPolicy);
+        if (log.epoch() <= snapshotEpoch) {
+            log.reset(snapshotEpoch + 1);          // A checkpoint stopped before emptying the log
+        }
+    }
+
+    private static ExecutorService requireExecutor(ExecutorService deliveryExecutor) {
+        if (deliveryExecutor == null) {
+            throw new IllegalArgumentException("Delivery executor can not be null");
+        }
+
+        return deliveryExecutor;
+    }
+
+    private static ExecutorService newDeliveryExecutor() {
+        return Executors.newFixedThreadPool(DELIVERY_THREADS, task -> {
+            Thread thread = new Thread(task, "outlook-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @Override
@@ -47,16 +148,17 @@ public class Outlook implements MailClient {
         checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
         checkIfStringIsNullEmptyOrBlank(email, "Email can not be null, empty or blank");
 
-        for (Account current : allAccounts) {
-            if (current.name().equals(accountName)) {
-                throw new AccountAlreadyExistsException("Account with this name already existed!");
-            }
+        Account newAccount;
+        locks.lock(accountName);             // Logged before anything can be delivered to the new account
+        try {
+            Inbox defaultInbox = new Inbox(metrics);             // With adding new account we create /inbox folder.
+            receivedMails.putIfAbsent(accountName, defaultInbox); // Ready before the account becomes visible
+            newAccount = accounts.register(accountName, email);
+            logRecord(new LogRecord.AddAccount(accountName, email));
+        } finally {
+            locks.unlock(accountName);
         }
-
-        Account newAccount = new Account(email, accountName);
-        allAccounts.add(newAccount);
-        Inbox defaultInbox = new Inbox();                    // With adding new account we create /inbox folder.
-        receivedMails.put(accountName, defaultInbox);
+        syncLog();
 
         return newAccount;
     }
@@ -67,8 +169,98 @@ public class Outlook implements MailClient {
         checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
         checkIfAccountExists(accountName);
 
-        Inbox inbox = receivedMails.get(accountName);
-        inbox.createFolder(path);
+        locks.lock(accountName);
+        try {
+            Inbox inbox = receivedMails.get(accountName);
+            inbox.createFolder(path);
+            logRecord(new LogRecord.CreateFolder(accountName, path));
+        } finally {
+            locks.unlock(accountName);
+        }
+        syncLog();
+    }
+
+    // Rules keep the path of their folder, so a folder that is the target of a rule, or has one below it,
+    // can not be moved or deleted.
+    @Override
+    public void moveFolder(String accountName, String path, String newParentPath) {
+        checkIfStringIsNullEmptyOrBlank(path, "Path can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(newParentPath, "Path can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        checkIfAccountExists(accountName);
+
+        locks.lock(accountName);
+        try {
+            checkIfFolderIsNotRuleTarget(accountName, path);
+            receivedMails.get(accountName).moveFolder(path, newParentPath);
+            logRecord(new LogRecord.MoveFolder(accountName, path, newParentPath));
+        } finally {
+            locks.unlock(accountName);
+        }
+        syncLog();
+    }
+
+    @Override
+    public void deleteFolder(String accountName, String path) {
+        checkIfStringIsNullEmptyOrBlank(path, "Path can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        checkIfAccountExists(accountName);
+
+        locks.lock(accountName);
+        try {
+            checkIfFolderIsNotRuleTarget(accountName, path);
+            receivedMails.get(accountName).deleteFolder(path);
+            logRecord(new LogRecord.DeleteFolder(accountName, path));
+        } finally {
+            locks.unlock(accountName);
+        }
+        syncLog();
+    }
+
+    // The folder and every folder below it, parents first.
+    @Override
+    public List<String> listFolders(String accountName, String path) {
+        checkIfStringIsNullEmptyOrBlank(path, "Path can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        checkIfAccountExists(accountName);
+
+        return receivedMails.get(accountName).listFolders(path);
+    }
+
+    // Mails in the folder and in every folder below it.
+    @Override
+    public int countMails(String accountName, String path) {
+        checkIfStringIsNullEmptyOrBlank(path, "Path can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        checkIfAccountExists(accountName);
+
+        return receivedMails.get(accountName).countMails(path);
+    }
+
+    // Counters kept up to date by every store, so dashboards can poll them without reading any mail.
+    @Override
+    public FolderStats getFolderStats(String accountName, String folderPath) {
+        checkIfStringIsNullEmptyOrBlank(folderPath, "Path can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        checkIfAccountExists(accountName);
+
+        if (folderPath.equals(SENT_FOLDER)) {
+            Folder sent = sentMails.get(accountName);
+            return sent == null ? FolderStats.EMPTY : sent.getStats();
+        }
+
+        return receivedMails.get(accountName).getFolderStats(folderPath);
+    }
+
+    // Received and sent mails together.
+    @Override
+    public FolderStats getAccountStats(String accountName) {
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        checkIfAccountExists(accountName);
+
+        Folder sent = sentMails.get(accountName);
+        FolderStats received = receivedMails.get(accountName).getStats();
+        return sent == null ? received : received.plus(sent.getStats());
     }
 
     @Override
@@ -81,49 +273,158 @@ public class Outlook implements MailClient {
         }
 
         checkIfAccountExists(accountName);
-        checkIfFolderExists(folderPath, accountName);
-
-        Rule newRule = new Rule(folderPath, priority);
-        newRule.parseRuleDefinition(ruleDefinition);
-
-        if (!checkIfRuleIsConflict(accountName, newRule, folderPath)) {
-            if (!rules.containsKey(accountName)) {
-                Set<Rule> ruleSet = new TreeSet<>(new SortRulesByPriority());
-                ruleSet.add(newRule);
-                rules.put(accountName, ruleSet);
-            } else {
-                rules.get(accountName).add(newRule);
-            }
 
-            Set<Rule> addedRules = rules.get(accountName);
+        locks.lock(accountName);
+        try {
+            checkIfFolderExists(folderPath, accountName);
+
+            Rule newRule = new Rule(folderPath, priority);
+            newRule.parseRuleDefinition(ruleDefinition);
 
-            if (receivedMails.containsKey(accountName)) {
-                Inbox inbox = receivedMails.get(accountName);
-                inbox.checkForBetterFolders(addedRules);
+            if (!checkIfRuleIsConflict(accountName, newRule, folderPath)) {
+                AccountRules addedRules = rules.computeIfAbsent(accountName, name -> new AccountRules());
+                boolean added = addedRules.addRule(newRule);  // Keywords are compiled into the account's matcher
+                if (added) {
+                    logRecord(new LogRecord.AddRule(accountName, folderPath, ruleDefinition, priority));
+                }
+
+                if (added && receivedMails.containsKey(accountName)) {
+                    Inbox inbox = receivedMails.get(accountName);
+                    inbox.checkForBetterFolders(newRule);
+                }
             }
+        } finally {
+            locks.unlock(accountName);
         }
+        syncLog();
     }
 
     @Override
     public void receiveMail(String accountName, String mailMetadata, String mailContent) {
+        Mail mail = parseForDelivery(accountName, mailMetadata, mailContent);
+        deliver(accountName, MailFeatures.of(mail));
+        syncLog();
+    }
+
+    Mail parseForDelivery(String accountName, String mailMetadata, String mailContent) {
         checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
         checkIfStringIsNullEmptyOrBlank(mailMetadata, "Mail's metadata can not be null, empty or blank");
         checkIfStringIsNullEmptyOrBlank(mailContent, "Mail's content can not be null, empty or blank");
         checkIfAccountExists(accountName);
 
-        Mail mail = parseMailMetadata(mailMetadata, mailContent);
+        return parseMailMetadata(mailMetadata, mailContent);
+    }
+
+    private String deliver(String accountName, MailFeatures features) {
+        locks.lockShared(accountName);
+        try {
+            String path = classify(accountName, features);
+            store(accountName, path, features.mail());
+            return path;
+        } finally {
+            locks.unlockShared(accountName);
+        }
+    }
+
+    // Classification and storing as two separate steps, for callers that run them on different threads.
+    // The rules version taken with the classification tells whether a rule was added before the mail is
+    // stored; the mail is then classified again, as reclassification of /inbox has already run without it.
+    Classification classifyForDelivery(String accountName, Mail mail) {
+        locks.lockShared(accountName);
+        try {
+            return new Classification(classify(accountName, MailFeatures.of(mail)), rulesVersion(accountName));
+        } finally {
+            locks.unlockShared(accountName);
+        }
+    }
+
+    String storeClassified(String accountName, Mail mail, Classification classification) {
         String path;
-        if (rules.containsKey(accountName)) {
-            Set<Rule> accountRules = rules.get(accountName);
-            Inbox inbox = receivedMails.get(accountName);
-            path = inbox.checkForBestRule(mail, accountRules);
-        } else {
-            path = DEFAULT_FOLDER;
+        locks.lockShared(accountName);
+        try {
+            path = classification.rulesVersion() == rulesVersion(accountName)
+                    ? classification.folderPath()
+                    : classify(accountName, MailFeatures.of(mail));
+            store(accountName, path, mail);
+        } finally {
+            locks.unlockShared(accountName);
         }
+        syncLog();
 
+        return path;
+    }
 
-        Inbox inbox = receivedMails.get(accountName);
-        inbox.putMailInFolder(path, mail);
+    record Classification(String folderPath, long rulesVersion) { }
+
+    private String classify(String accountName, MailFeatures features) {
+        AccountRules accountRules = rules.get(accountName);
+        if (accountRules == null) {
+            return DEFAULT_FOLDER;
+        }
+
+        return receivedMails.get(accountName).checkForBestRule(features, accountRules);
+    }
+
+    private long rulesVersion(String accountName) {
+        AccountRules accountRules = rules.get(accountName);
+        return accountRules == null ? 0 : accountRules.getVersion();
+    }
+
+    // The account and its rules are resolved once for the whole batch. Parsing and classification are
+    // independent per mail, so large batches run them in parallel. Each target folder then gets one append.
+    // Only classification and storing hold the account lock; parsing does not need it.
+    @Override
+    public List<DeliveryResult> receiveMails(String accountName, Collection<RawMail> mails) {
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        if (mails == null) {
+            throw new IllegalArgumentException("Mails can not be null");
+        }
+        checkIfAccountExists(accountName);
+
+        List<RawMail> batch = new ArrayList<>(mails);
+        Mail[] parsed = new Mail[batch.size()];
+        DeliveryResult[] results = new DeliveryResult[batch.size()];
+
+        batchIndexes(batch.size()).forEach(i -> {
+            try {
+                RawMail rawMail = batch.get(i);
+                if (rawMail == null) {
+                    throw new IllegalArgumentException("Mail can not be null");
+                }
+                checkIfStringIsNullEmptyOrBlank(rawMail.metadata(), "Mail's metadata can not be null, empty or blank");
+                checkIfStringIsNullEmptyOrBlank(rawMail.content(), "Mail's content can not be null, empty or blank");
+
+                parsed[i] = parseMailMetadata(rawMail.metadata(), rawMail.content());
+            } catch (RuntimeException e) {
+                results[i] = DeliveryResult.failed(e);
+            }
+        });
+
+        locks.lockShared(accountName);
+        try {
+            batchIndexes(batch.size()).filter(i -> results[i] == null).forEach(i -> {
+                try {
+                    results[i] = DeliveryResult.delivered(classify(accountName, MailFeatures.of(parsed[i])));
+                } catch (RuntimeException e) {
+                    results[i] = DeliveryResult.failed(e);
+                }
+            });
+
+            Map<String, List<Mail>> byFolder = new LinkedHashMap<>();
+            for (int i = 0; i < results.length; i++) {
+                if (results[i].isDelivered()) {
+                    byFolder.computeIfAbsent(results[i].folderPath(), path -> new ArrayList<>()).add(parsed[i]);
+                }
+            }
+            for (Map.Entry<String, List<Mail>> entry : byFolder.entrySet()) {
+                storeAll(accountName, entry.getKey(), entry.getValue());
+            }
+        } finally {
+            locks.unlockShared(accountName);
+        }
+        syncLog();
+
+        return Arrays.asList(results);
     }
 
     @Override
@@ -133,10 +434,11 @@ public class Outlook implements MailClient {
         checkIfAccountExists(account);
 
         if (folderPath.equals(SENT_FOLDER)) {
-            if (!sentMails.containsKey(account)) {
-                return new ArrayList<>();
+            Folder sent = sentMails.get(account);
+            if (sent == null) {
+                return List.of();
             }
-            return sentMails.get(account);
+            return sent.getMails();
         }
 
         Inbox inbox = receivedMails.get(account);
@@ -147,51 +449,199 @@ public class Outlook implements MailClient {
         return inbox.getMailsFromFolder(folderPath);
     }
 
+    // Pages through a folder in arrival order; pass null for the first page and then each page's token.
+    @Override
+    public Page getMailsFromFolder(String account, String folderPath, String pageToken, int pageSize) {
+        checkIfStringIsNullEmptyOrBlank(folderPath, "Path can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(account, "Account can not be null, empty or blank");
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        checkIfAccountExists(account);
+
+        if (folderPath.equals(SENT_FOLDER)) {
+            Folder sent = sentMails.get(account);
+            return sent == null ? new Page(List.of(), null, 0) : sent.getPage(pageToken, pageSize);
+        }
+
+        return receivedMails.get(account).getPage(folderPath, pageToken, pageSize);
+    }
+
+    // Mails in [from, to] by received time, oldest first; either bound can be null for an open range.
+    @Override
+    public List<Mail> getMailsReceivedBetween(String account, String folderPath, LocalDateTime from,
+                                              LocalDateTime to) {
+        checkIfStringIsNullEmptyOrBlank(folderPath, "Path can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(account, "Account can not be null, empty or blank");
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Start of the date range is after its end");
+        }
+        checkIfAccountExists(account);
+
+        if (folderPath.equals(SENT_FOLDER)) {
+            Folder sent = sentMails.get(account);
+            return sent == null ? List.of() : sent.getMailsReceivedBetween(from, to);
+        }
+
+        return receivedMails.get(account).getMailsReceivedBetween(folderPath, from, to);
+    }
+
+    @Override
+    public List<Mail> getNewestMails(String account, String folderPath, int limit) {
+        checkIfStringIsNullEmptyOrBlank(folderPath, "Path can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(account, "Account can not be null, empty or blank");
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit can not be negative");
+        }
+        checkIfAccountExists(account);
+
+        if (folderPath.equals(SENT_FOLDER)) {
+            Folder sent = sentMails.get(account);
+            return sent == null ? List.of() : sent.getNewestMails(limit);
+        }
+
+        return receivedMails.get(account).getNewestMails(folderPath, limit);
+    }
+
+    // Searches every folder of the account's mailbox; the query can narrow it down to one folder.
+    @Override
+    public List<Mail> search(String accountName, SearchQuery query) {
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        if (query == null) {
+            throw new IllegalArgumentException("Query can not be null");
+        }
+        checkIfAccountExists(accountName);
+
+        return receivedMails.get(accountName).search(query);
+    }
+
     @Override
     public void sendMail(String accountName, String mailMetadata, String mailContent) {
         checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
         checkIfStringIsNullEmptyOrBlank(mailMetadata, "Mail's metadata can not be null, empty or blank");
         checkIfStringIsNullEmptyOrBlank(mailContent, "Mail's content can not be null, empty or blank");
 
-        if (!mailMetadata.contains(SENDER)) {
-            mailMetadata = mailMetadata.concat(System.lineSeparator() +
-                    SENDER + " " + getSenderEmailByName(accountName));
-        } else {
-            int firstIdx = mailMetadata.indexOf(SENDER);
-            int lastIdx = mailMetadata.indexOf(System.lineSeparator(), firstIdx);
-            if (lastIdx != -1) {
-                String substring = mailMetadata.substring(firstIdx, lastIdx);
-                mailMetadata = mailMetadata.replace(substring, SENDER + " " + getSenderEmailByName(accountName)
-                        + System.lineSeparator());
-            } else {
-                int last = mailMetadata.charAt(mailMetadata.length() - 1);
-                String substring = mailMetadata.substring(firstIdx, last);
-                mailMetadata = mailMetadata.replace(substring, SENDER + " " + getSenderEmailByName(accountName)
-                        + System.lineSeparator());
+        // Parsed once with the sending account as sender; the same immutable Mail goes to /sent and to
+        // every local recipient instead of re-validating and re-parsing the metadata per recipient, and
+        // its features are prepared once for the rules of all recipients.
+        String senderEmail = String.valueOf(getSenderEmailByName(accountName));
+        Mail mail = parse(mailMetadata, mailContent, senderEmail);
+        MailFeatures features = MailFeatures.of(mail);
+
+        List<String> touchedAccounts = new ArrayList<>();
+        touchedAccounts.add(accountName);
+        for (String currRecipient : mail.recipients()) {
+            if (checkIfAccountWithThisEmailExists(currRecipient)) {
+                touchedAccounts.add(getSenderNameByMail(currRecipient));
             }
         }
 
-        Mail mail = parseMailMetadata(mailMetadata, mailContent);
+        int[] lockedStripes = locks.lockAllShared(touchedAccounts);  // Fixed stripe order: fan-outs can't deadlock
+        try {
+            storeSent(accountName, mail);
 
-        if (sentMails.containsKey(accountName)) {
-            sentMails.get(accountName).add(mail);
-        } else {
-            sentMails.put(accountName, new ArrayList<>(List.of(mail)));
+            for (String recipientName : touchedAccounts.subList(1, touchedAccounts.size())) {
+                deliver(recipientName, features);
+            }
+        } finally {
+            locks.unlockAllShared(lockedStripes);
         }
+        syncLog();
+    }
 
-        for (String currRecipient : mail.recipients()) {
-            if (checkIfAccountWithThisEmailExists(currRecipient)) {
-                receiveMail(getSenderNameByMail(currRecipient), mailMetadata, mailContent);
+    // The /sent copy is stored before returning, exactly as in sendMail. Recipients are then delivered on the
+    // delivery executor by at most maxConcurrency workers of this send, each locking one recipient at a time.
+    // A closed client stores nothing; an executor shut down while the send is handed over fails its recipients.
+    @Override
+    public CompletableFuture<Map<String, DeliveryResult>> sendMailAsync(String accountName, String mailMetadata,
+                                                                        String mailContent, int maxConcurrency) {
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(mailMetadata, "Mail's metadata can not be null, empty or blank");
+        checkIfStringIsNullEmptyOrBlank(mailContent, "Mail's content can not be null, empty or blank");
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        if (deliveryExecutor.isShutdown()) {
+            throw new IllegalStateException("Delivery executor is shut down");
+        }
+
+        String senderEmail = String.valueOf(getSenderEmailByName(accountName));
+        Mail mail = parse(mailMetadata, mailContent, senderEmail);
+
+        locks.lockShared(accountName);
+        try {
+            storeSent(accountName, mail);
+        } finally {
+            locks.unlockShared(accountName);
+        }
+        syncLog();
+
+        MailFeatures features = MailFeatures.of(mail);
+        List<String> recipients = new ArrayList<>(mail.recipients());
+        DeliveryResult[] results = new DeliveryResult[recipients.size()];
+        AtomicInteger nextRecipient = new AtomicInteger();
+        Runnable worker = () -> {
+            int idx;
+            while ((idx = nextRecipient.getAndIncrement()) < recipients.size()) {
+                results[idx] = deliverToRecipient(recipients.get(idx), features);
+            }
+        };
+
+        List<CompletableFuture<?>> workers = new ArrayList<>();
+        RejectedExecutionException rejection = null;
+        for (int i = 0; i < Math.min(maxConcurrency, recipients.size()); i++) {
+            try {
+                workers.add(CompletableFuture.runAsync(worker, deliveryExecutor));
+            } catch (RejectedExecutionException e) {
+                rejection = e;                      // Any worker already running still takes every recipient
+                break;
             }
         }
+
+        RuntimeException failure = rejection;
+        return CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            syncLog();
+            Map<String, DeliveryResult> report = new LinkedHashMap<>();
+            for (int i = 0; i < results.length; i++) {
+                report.put(recipients.get(i), results[i] == null ? DeliveryResult.failed(failure) : results[i]);
+            }
+            return report;
+        });
     }
 
     public Set<Account> getAllAccounts() {
-        return allAccounts;
+        return accounts.getAllAccounts();
     }
 
     public Set<Rule> getAllRules(String name) {
-        return rules.get(name);
+        AccountRules accountRules = rules.get(name);
+        return accountRules == null ? null : accountRules.getRules();
+    }
+
+    // Statistics of every rule of the account, the most expensive first; rules that cost a lot and never match
+    // are the ones worth removing. The rules are copied under the account's shared lock, as addRule changes
+    // them under the exclusive one; their statistics are counters that can be read at any time.
+    public List<RuleProfile> getRuleProfiles(String accountName) {
+        checkIfStringIsNullEmptyOrBlank(accountName, "Account can not be null, empty or blank");
+        checkIfAccountExists(accountName);
+
+        List<Rule> accountRules;
+        locks.lockShared(accountName);
+        try {
+            AccountRules added = rules.get(accountName);
+            accountRules = added == null ? List.of() : List.copyOf(added.getRules());
+        } finally {
+            locks.unlockShared(accountName);
+        }
+
+        return accountRules.stream()
+                .map(RuleProfile::of)
+                .sorted(Comparator.comparingLong(RuleProfile::totalNanos).reversed())
+                .toList();
+    }
+
+    public BodyStore.BodyStoreStats getBodyStoreStats() {
+        return bodies.getStats();
     }
 
     public Inbox getReceived(String name) {
@@ -199,38 +649,189 @@ public class Outlook implements MailClient {
     }
 
     public void addMailToAccount(String name, String folder, Mail mail) {
-        receivedMails.get(name).putMailInFolder(folder, mail);
+        locks.lockShared(name);
+        try {
+            store(name, folder, mail);
+        } finally {
+            locks.unlockShared(name);
+        }
+        syncLog();
     }
 
-    private void checkIfAccountExists(String accountName) {
-        if (allAccounts.isEmpty()) {
-            throw new AccountNotFoundException("There is not such account");
+    // Writes a snapshot of every account and empties the log, so the next startup loads the snapshot instead
+    // of replaying the whole history. Mutations wait until the checkpoint is done; reads are not blocked.
+    public void checkpoint() {
+        if (log == null) {
+            throw new IllegalStateException("Checkpoints are only available in durable mode");
         }
 
-        int flag = 0;
-        for (Account currAccount : allAccounts) {
-            if (currAccount.name().equals(accountName)) {
-                flag = 1;
-                break;
+        locks.lockAll();
+        try {
+            long epoch = log.epoch();
+            SnapshotFile.write(snapshotFile, new OutlookSnapshot(epoch, exportAccounts()));
+            log.reset(epoch + 1);
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (log != null) {
+                log.close();
+            }
+        } finally {
+            if (ownsDeliveryExecutor) {
+                deliveryExecutor.shutdown();        // Deliveries already handed over still complete
             }
         }
-        if (flag == 0) {
-            throw new AccountNotFoundException("There is not such account");
+    }
+
+    // With a log, storing the mail and appending the record happen together under the target's monitor,
+    // so the log holds the mails of every folder in the same order as the folder itself. The record is only
+    // appended once the mail is stored, so a store that fails, e.g. into a missing folder, leaves none.
+    private void store(String accountName, String path, Mail mail) {
+        Inbox inbox = receivedMails.get(accountName);
+        if (log == null) {
+            inbox.putMailInFolder(path, mail);
+            return;
+        }
+
+        synchronized (inbox) {
+            inbox.putMailInFolder(path, mail);
+            log.append(new LogRecord.StoreMail(accountName, path, mail));
         }
     }
 
-    private boolean checkIfAccountWithThisEmailExists(String mail) {
-        if (allAccounts.isEmpty()) {
-            return false;
+    private void storeAll(String accountName, String path, List<Mail> mails) {
+        Inbox inbox = receivedMails.get(accountName);
+        if (log == null) {
+            inbox.putMailsInFolder(path, mails);
+            return;
+        }
+
+        synchronized (inbox) {
+            inbox.putMailsInFolder(path, mails);
+            for (Mail mail : mails) {
+                log.append(new LogRecord.StoreMail(accountName, path, mail));
+            }
+        }
+    }
+
+    private void storeSent(String accountName, Mail mail) {
+        Folder sent = sentMails.computeIfAbsent(accountName, name -> new Folder());
+        if (log == null) {
+            sent.add(mail);
+            return;
+        }
+
+        synchronized (sent) {
+            sent.add(mail);
+            log.append(new LogRecord.SentMail(accountName, mail));
+        }
+    }
+
+    private void logRecord(LogRecord record) {
+        if (log != null) {
+            log.append(record);
         }
+    }
+
+    // Called once a mutation has released its locks, so concurrent callers wait for one shared commit.
+    private void syncLog() {
+        if (log != null) {
+            log.sync();
+        }
+    }
 
-        for (Account currAccount : allAccounts) {
-            if (currAccount.emailAddress().equals(mail)) {
-                return true;
+    // Account, folder and rule records go through the public operations again, so a rule added after some
+    // mails reclassifies them exactly as it did originally; stored mails are put back where they were logged.
+    private void replay(List<LogRecord> records) {
+        for (LogRecord record : records) {
+            if (record instanceof LogRecord.AddAccount addAccount) {
+                addNewAccount(addAccount.accountName(), addAccount.email());
+            } else if (record instanceof LogRecord.CreateFolder createFolder) {
+                createFolder(createFolder.accountName(), createFolder.path());
+            } else if (record instanceof LogRecord.MoveFolder moveFolder) {
+                moveFolder(moveFolder.accountName(), moveFolder.path(), moveFolder.newParentPath());
+            } else if (record instanceof LogRecord.DeleteFolder deleteFolder) {
+                deleteFolder(deleteFolder.accountName(), deleteFolder.path());
+            } else if (record instanceof LogRecord.AddRule addRule) {
+                addRule(addRule.accountName(), addRule.folderPath(), addRule.ruleDefinition(), addRule.priority());
+            } else if (record instanceof LogRecord.StoreMail storeMail) {
+                receivedMails.get(storeMail.accountName()).putMailInFolder(storeMail.folderPath(),
+                        withStoredBody(storeMail.mail()));
+            } else if (record instanceof LogRecord.SentMail sentMail) {
+                sentMails.computeIfAbsent(sentMail.accountName(), name -> new Folder())
+                        .add(withStoredBody(sentMail.mail()));
             }
         }
+    }
 
-        return false;
+    private List<AccountSnapshot> exportAccounts() {
+        List<AccountSnapshot> exported = new ArrayList<>();
+        for (Account account : accounts.getAllAccounts()) {
+            String name = account.name();
+            Inbox inbox = receivedMails.get(name);
+
+            Map<String, List<Mail>> folders = new LinkedHashMap<>();
+            for (String path : inbox.getFolderPaths()) {
+                folders.put(path, inbox.getMailsFromFolder(path));
+            }
+
+            Folder sent = sentMails.get(name);
+            AccountRules accountRules = rules.get(name);
+            exported.add(new AccountSnapshot(name, account.emailAddress(), folders,
+                    sent == null ? List.of() : sent.getMails(),
+                    accountRules == null ? List.of() : new ArrayList<>(accountRules.getRules())));
+        }
+
+        // Registering the owner of an email first keeps the same account behind that email after loading
+        exported.sort(Comparator.comparing(account -> !account.name().equals(getSenderNameByMail(account.email()))));
+        return exported;
+    }
+
+    // The snapshot holds state that was already classified, so mails and rules are put back as they are.
+    private void load(OutlookSnapshot snapshot) {
+        for (AccountSnapshot account : snapshot.accounts()) {
+            addNewAccount(account.name(), account.email());
+
+            Inbox inbox = receivedMails.get(account.name());
+            for (Map.Entry<String, List<Mail>> folder : account.folders().entrySet()) {
+                if (!inbox.checkIfFolderExists(folder.getKey())) {
+                    inbox.createFolder(folder.getKey());
+                }
+                inbox.putMailsInFolder(folder.getKey(), folder.getValue());
+            }
+
+            if (!account.sentMails().isEmpty()) {
+                Folder sent = new Folder();
+                sent.addAll(account.sentMails());
+                sentMails.put(account.name(), sent);
+            }
+
+            if (!account.rules().isEmpty()) {
+                AccountRules accountRules = new AccountRules();
+                account.rules().forEach(accountRules::addRule);
+                rules.put(account.name(), accountRules);
+            }
+        }
+    }
+
+    private Mail withStoredBody(Mail mail) {
+        return new Mail(mail.sender(), mail.recipients(), mail.subject(), bodies.intern(mail.body()),
+                mail.received());
+    }
+
+    private void checkIfAccountExists(String accountName) {
+        if (!accounts.containsName(accountName)) {
+            throw new AccountNotFoundException("There is not such account");
+        }
+    }
+
+    private boolean checkIfAccountWithThisEmailExists(String mail) {
+        return accounts.containsEmail(mail);
     }
 
     private void checkIfFolderExists(String path, String accountName) {
@@ -245,6 +846,38 @@ public class Outlook implements MailClient {
         }
     }
 
+    private void checkIfFolderIsNotRuleTarget(String accountName, String path) {
+        AccountRules accountRules = rules.get(accountName);
+        if (accountRules == null) {
+            return;
+        }
+
+        for (Rule rule : accountRules.getRules()) {
+            String target = rule.getFolderPath();
+            if (target.equals(path) || target.startsWith(path + "/")) {
+                throw new FolderInUseException("There is a rule moving mails to " + target);
+            }
+        }
+    }
+
+    private DeliveryResult deliverToRecipient(String recipientEmail, MailFeatures features) {
+        Account recipient = accounts.getByEmail(recipientEmail);
+        if (recipient == null) {
+            return DeliveryResult.skipped();            // Not an account of this client
+        }
+
+        try {
+            return DeliveryResult.delivered(deliver(recipient.name(), features));
+        } catch (RuntimeException e) {
+            return DeliveryResult.failed(e);
+        }
+    }
+
+    private IntStream batchIndexes(int batchSize) {
+        IntStream indexes = IntStream.range(0, batchSize);
+        return batchSize >= PARALLEL_BATCH_THRESHOLD ? indexes.parallel() : indexes;
+    }
+
     private void checkIfStringIsNullEmptyOrBlank(String value, String exceptionMessage) {
         if (value == null || value.isEmpty() || value.isBlank()) {
             throw new IllegalArgumentException(exceptionMessage);
@@ -252,18 +885,20 @@ public class Outlook implements MailClient {
     }
 
     private boolean checkIfRuleIsConflict(String accountName, Rule rule, String path) {
-        if (rules.isEmpty()) {
+        if (!rules.containsKey(accountName)) {
             return false;
         }
 
-        Set<Rule> accountRules = rules.get(accountName);
+        List<Rule> samePriority = rules.get(accountName).getRules().getLevel(rule.getPriority());
 
-        for (Rule currRule : accountRules) {
-            if (currRule.getPriority() == rule.getPriority() && !currRule.getFolderPath().equals(path)) {
+        for (Rule currRule : samePriority) {
+            if (!currRule.getFolderPath().equals(path)) {
                 if (currRule.checkIfTwoCollectionsAreEqual(currRule.getSubjectIncludes(), rule.getSubjectIncludes()) &&
-                        currRule.checkIfTwoCollectionsAreEqual(currRule.getSubjectOrBodyIncludes(), rule.getSubjectOrBodyIncludes()) &&
-                        currRule.checkIfTwoCollectionsAreEqual(currRule.getRecipientsEmails(), rule.getRecipientsEmails()) &&
-                        currRule.getSender().equals(rule.getSender())) {
+                        currRule.checkIfTwoCollectionsAreEqual(currRule.getSubjectOrBodyIncludes(),
+                                rule.getSubjectOrBodyIncludes()) &&
+                        currRule.checkIfTwoCollectionsAreEqual(currRule.getRecipientsEmails(),
+                                rule.getRecipientsEmails()) &&
+                        Objects.equals(currRule.getSender(), rule.getSender())) {
 
                     return true;
                 }
@@ -274,67 +909,25 @@ public class Outlook implements MailClient {
     }
 
     private String getSenderNameByMail(String mail) {
-        for (Account curr : allAccounts) {
-            if (curr.emailAddress().equals(mail)) {
-                return curr.name();
-            }
-        }
-
-        return null;
+        Account account = accounts.getByEmail(mail);
+        return account == null ? null : account.name();
     }
 
     private String getSenderEmailByName(String name) {
-        for (Account curr : allAccounts) {
-            if (curr.name().equals(name)) {
-                return curr.emailAddress();
-            }
-        }
-
-        return null;
+        Account account = accounts.getByName(name);
+        return account == null ? null : account.emailAddress();
     }
 
     public Mail parseMailMetadata(String mailMetadata, String mailBody) {
-        String[] words = mailMetadata.strip().split(MAIL_METADATA_REGEX);
-        String senderMail = "";
-        String senderName = "";
-        String subject = "";
-        String recipients;
-        Set<String> rec = new HashSet<>();
-        LocalDateTime dateTime = null;
-
-        for (int i = 0; i < words.length; i++) {
-            switch (words[i]) {
-                case MAIL_SENDER -> {
-                    i++;
-                    senderMail = words[i].strip();
-                    senderName = getSenderNameByMail(senderMail);
-                }
-                case SUBJECT -> {
-                    i++;
-                    subject = words[i].strip();
-                }
-                case RECIPIENTS -> {
-                    i++;
-                    recipients = words[i].strip();
-                    String[] allRecipients = recipients.strip().split(CSV_SEPARATOR);
-                    for (String currRecipient : allRecipients) {
-                        rec.add(currRecipient.strip());
-                    }
-                }
-                case RECEIVED -> {
-                    i++;
-                    String first = words[i].strip();
-                    i++;
-                    String sec = words[i].strip();
-                    String time = first + TIME_SEPARATOR + sec;
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern(DATE_TIME_FORMAT);
-                    dateTime = LocalDateTime.parse(time, formatter);
-                }
-            }
-        }
+        return parse(mailMetadata, mailBody, null);
+    }
 
-        Account account = new Account(senderMail, senderName);
-        return new Mail(account, rec, subject, mailBody, dateTime);
+    private Mail parse(String mailMetadata, String mailBody, String senderOverride) {
+        long start = metrics.start();
+        try {
+            return metadataParser.parse(mailMetadata, mailBody, senderOverride);
+        } finally {
+            metrics.stop(Operation.PARSE_MAIL_METADATA, start);
+        }
     }
 }
-
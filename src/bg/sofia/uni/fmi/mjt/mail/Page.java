@@ -0,0 +1,12 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.List;
+
+// One window of a folder. The mails are an immutable view; nextPageToken is null on the last page and
+// totalCount is the folder's size when the page was taken.
+public record Page(List<Mail> mails, String nextPageToken, int totalCount) {
+
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+}
@@ -0,0 +1,129 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.Arrays;
+
+// Ascending document ids stored as varint deltas, usually one or two bytes per id. Every SKIP_INTERVAL ids
+// a skip entry remembers where the list stands, so a cursor can jump over whole blocks without decoding them.
+public class PostingList {
+
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+    private static final int SKIP_INTERVAL = 64;
+    private byte[] data = new byte[4];
+    private int length;
+    private int count;
+    private int lastDoc = -1;
+    private int[] skipDocs = new int[0];        // Last id before the block
+    private int[] skipOffsets = new int[0];     // Byte offset of the block
+    private int skipCount;
+
+    // Ids must be added in ascending order; adding the last id again is a no-op.
+    public void add(int doc) {
+        if (doc <= lastDoc) {
+            if (doc == lastDoc) {
+                return;
+            }
+            throw new IllegalArgumentException("Document ids must be added in ascending order");
+        }
+
+        if (count > 0 && count % SKIP_INTERVAL == 0) {
+            if (skipCount == skipDocs.length) {
+                skipDocs = Arrays.copyOf(skipDocs, Math.max(4, skipCount * 2));
+                skipOffsets = Arrays.copyOf(skipOffsets, skipDocs.length);
+            }
+            skipDocs[skipCount] = lastDoc;
+            skipOffsets[skipCount] = length;
+            skipCount++;
+        }
+
+        writeVarInt(doc - lastDoc);
+        lastDoc = doc;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int sizeInBytes() {
+        return length + 2 * Integer.BYTES * skipCount;
+    }
+
+    public Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    private void writeVarInt(int value) {
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(length + 5, data.length * 2));
+        }
+
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    // Reads the list as it was when the cursor was created.
+    public static final class Cursor {
+        private final byte[] data;
+        private final int length;
+        private final int[] skipDocs;
+        private final int[] skipOffsets;
+        private final int skipCount;
+        private int offset;
+        private int doc = -1;
+        private int nextSkip;
+
+        private Cursor(PostingList list) {
+            data = list.data;
+            length = list.length;
+            skipDocs = list.skipDocs;
+            skipOffsets = list.skipOffsets;
+            skipCount = list.skipCount;
+        }
+
+        public int doc() {
+            return doc;
+        }
+
+        public int nextDoc() {
+            if (offset >= length) {
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+
+            int delta = 0;
+            int shift = 0;
+            byte next;
+            do {
+                next = data[offset++];
+                delta |= (next & 0x7F) << shift;
+                shift += 7;
+            } while (next < 0);
+
+            doc += delta;
+            return doc;
+        }
+
+        // Moves to the first id that is not smaller than target and returns it.
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+
+            while (nextSkip < skipCount && skipDocs[nextSkip] < target) {
+                if (skipOffsets[nextSkip] > offset) {
+                    offset = skipOffsets[nextSkip];
+                    doc = skipDocs[nextSkip];
+                }
+                nextSkip++;
+            }
+
+            while (doc < target) {
+                nextDoc();
+            }
+            return doc;
+        }
+    }
+}
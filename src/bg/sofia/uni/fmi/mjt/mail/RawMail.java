@@ -0,0 +1,3 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+public record RawMail(String metadata, String content) { }
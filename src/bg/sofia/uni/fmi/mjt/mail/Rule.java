@@ -14,6 +14,8 @@ public class Rule {
     private Set<String> recipientsEmails;
     private String sender;
     private int priority;
+    private CompiledRule compiled;
+    private final RuleStats stats = new RuleStats();
     private static final String SUBJECT = "subject-includes";
     private static final String SUBJECT_OR_BODY_INCLUDES = "subject-or-body-includes";
     private static final String RECIPIENTS = "recipients-includes";
@@ -26,6 +28,19 @@ public class Rule {
         subjectIncludes = new HashSet<>();
         subjectOrBodyIncludes = new HashSet<>();
         recipientsEmails = new HashSet<>();
+        compile();
+    }
+
+    // Rebuilds an already parsed rule, e.g. one loaded from a snapshot, without going through its definition.
+    public Rule(String folderPath, int priority, Set<String> subjectIncludes, Set<String> subjectOrBodyIncludes,
+                Set<String> recipientsEmails, String sender) {
+        this.folderPath = folderPath;
+        this.priority = priority;
+        this.subjectIncludes = new HashSet<>(subjectIncludes);
+        this.subjectOrBodyIncludes = new HashSet<>(subjectOrBodyIncludes);
+        this.recipientsEmails = new HashSet<>(recipientsEmails);
+        this.sender = sender;
+        compile();
     }
 
     public boolean checkIfTwoCollectionsAreEqual(Set<String> first, Set<String> second) {
@@ -41,7 +56,7 @@ public class Rule {
                 && checkIfTwoCollectionsAreEqual(subjectIncludes, rule.subjectIncludes)
                 && checkIfTwoCollectionsAreEqual(subjectOrBodyIncludes, rule.subjectOrBodyIncludes)
                 && checkIfTwoCollectionsAreEqual(recipientsEmails, rule.recipientsEmails)
-                && sender.equals(rule.sender);
+                && Objects.equals(sender, rule.sender);
     }
 
     @Override
@@ -119,45 +134,28 @@ public class Rule {
                 }
             }
         }
+        compile();
+    }
+
+    private void compile() {
+        compiled = CompiledRule.compile(sender, recipientsEmails, subjectIncludes, subjectOrBodyIncludes);
     }
 
     public boolean checkIfMailMatchesRule(Mail mail) {
-        int condition = 0;
+        return checkIfMailMatchesRule(mail, new DirectKeywordScan(mail));
+    }
 
-        if (sender != null && !sender.equals(mail.sender().emailAddress())) {
-            return false;
-        }
-        if (recipientsEmails != null && !recipientsEmails.isEmpty()) {
-            condition = 1;
-            int flag = 0;
-            for (String email : recipientsEmails) {
-                if (mail.recipients().contains(email)) {
-                    flag = 1;
-                    break;
-                }
-            }
-            if (flag == 0) {
-                return false;
-            }
-        }
-        if (subjectIncludes != null && !subjectIncludes.isEmpty()) {
-            condition = 1;
-            for (String subjectWord : subjectIncludes) {
-                if (!mail.subject().contains(subjectWord)) {
-                    return false;
-                }
-            }
-        }
-        if (subjectOrBodyIncludes != null && !subjectOrBodyIncludes.isEmpty()) {
-            condition = 1;
-            for (String subjectOrBodyWord : subjectOrBodyIncludes) {
-                if (!mail.subject().contains(subjectOrBodyWord) && !mail.body().contains(subjectOrBodyWord)) {
-                    return false;
-                }
-            }
+    public boolean checkIfMailMatchesRule(Mail mail, KeywordScan scan) {
+        if (!stats.shouldTime()) {
+            boolean matched = compiled.matches(mail, scan);
+            stats.record(matched);
+            return matched;
         }
 
-        return condition == 1;   // If all of mail's data is null or empty, the mail doesn't match
+        long start = System.nanoTime();
+        boolean matched = compiled.matches(mail, scan);
+        stats.recordTimed(matched, System.nanoTime() - start);
+        return matched;
     }
 
     public String getFolderPath() {
@@ -183,4 +181,8 @@ public class Rule {
     public int getPriority() {
         return priority;
     }
+
+    public RuleStats getStats() {
+        return stats;
+    }
 }
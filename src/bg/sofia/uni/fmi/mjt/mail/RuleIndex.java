@@ -0,0 +1,13 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.List;
+
+// Finds the first matching rule among the rules of one priority level. Rules are handed over with their
+// position in the level, so an index can keep several lists and still tell which match was added first.
+public interface RuleIndex {
+
+    void add(int position, Rule rule);
+
+    Rule findFirstMatch(List<Rule> level, MailFeatures features, KeywordScan scan);
+
+}
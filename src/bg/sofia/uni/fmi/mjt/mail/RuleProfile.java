@@ -0,0 +1,21 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.Instant;
+
+// A point-in-time read of one rule's statistics; lastMatched is null for a rule that never matched.
+public record RuleProfile(Rule rule, long evaluations, long matches, long totalNanos, Instant lastMatched) {
+
+    public static RuleProfile of(Rule rule) {
+        RuleStats stats = rule.getStats();
+        return new RuleProfile(rule, stats.getEvaluations(), stats.getMatches(), stats.getTotalNanos(),
+                stats.getLastMatched());
+    }
+
+    public boolean neverMatched() {
+        return matches == 0;
+    }
+
+    public double averageNanos() {
+        return evaluations == 0 ? 0 : (double) totalNanos / evaluations;
+    }
+}
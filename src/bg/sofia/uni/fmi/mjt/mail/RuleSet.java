@@ -0,0 +1,123 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// The rules of an account, one bucket per priority level. A level keeps its rules in insertion order and
+// has its own index, so adding a rule or finding the first match costs the same however many other levels
+// there are. A bit per level tells which levels have rules, and the first match search visits only those,
+// from the highest priority down, stopping at the first level that matches. Iteration follows the same
+// order. Rules of the same priority are all kept; only a rule equal to one already added is skipped.
+public class RuleSet extends AbstractSet<Rule> {
+
+    public static final int HIGHEST_PRIORITY = 1;
+    public static final int LOWEST_PRIORITY = 10;
+    private static final RuleIndex IN_ORDER = new RuleIndex() {
+        @Override
+        public void add(int position, Rule rule) {
+        }
+
+        @Override
+        public Rule findFirstMatch(List<Rule> level, MailFeatures features, KeywordScan scan) {
+            for (Rule rule : level) {
+                if (rule.checkIfMailMatchesRule(features.mail(), scan)) {
+                    return rule;
+                }
+            }
+
+            return null;
+        }
+    };
+
+    private final Supplier<? extends RuleIndex> indexes;
+    private final Level[] levels = new Level[LOWEST_PRIORITY - HIGHEST_PRIORITY + 1];
+    private final Set<Rule> members = new HashSet<>();
+    private int usedLevels;
+
+    public RuleSet() {
+        this(() -> IN_ORDER);
+    }
+
+    public RuleSet(Supplier<? extends RuleIndex> indexes) {
+        this.indexes = indexes;
+    }
+
+    @Override
+    public boolean add(Rule rule) {
+        int priority = rule.getPriority();
+        if (priority < HIGHEST_PRIORITY || priority > LOWEST_PRIORITY) {
+            throw new IllegalArgumentException("Priority is out of range");
+        }
+        if (!members.add(rule)) {
+            return false;
+        }
+
+        int idx = priority - HIGHEST_PRIORITY;
+        if (levels[idx] == null) {
+            levels[idx] = new Level(indexes.get());
+            usedLevels |= 1 << idx;
+        }
+
+        Level level = levels[idx];
+        level.index.add(level.rules.size(), rule);
+        level.rules.add(rule);
+        return true;
+    }
+
+    public Rule findFirstMatch(MailFeatures features, KeywordScan scan) {
+        for (int used = usedLevels; used != 0; used &= used - 1) {
+            Level level = levels[Integer.numberOfTrailingZeros(used)];
+            Rule match = level.index.findFirstMatch(level.rules, features, scan);
+            if (match != null) {
+                return match;
+            }
+        }
+
+        return null;
+    }
+
+    public List<Rule> getLevel(int priority) {
+        if (priority < HIGHEST_PRIORITY || priority > LOWEST_PRIORITY) {
+            return List.of();
+        }
+
+        Level level = levels[priority - HIGHEST_PRIORITY];
+        return level == null ? List.of() : Collections.unmodifiableList(level.rules);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return members.contains(o);
+    }
+
+    @Override
+    public Iterator<Rule> iterator() {
+        return Arrays.stream(levels)
+                .filter(Objects::nonNull)
+                .flatMap(level -> level.rules.stream())
+                .iterator();
+    }
+
+    @Override
+    public int size() {
+        return members.size();
+    }
+
+    private static final class Level {
+
+        private final List<Rule> rules = new ArrayList<>();
+        private final RuleIndex index;
+
+        private Level(RuleIndex index) {
+            this.index = index;
+        }
+    }
+}
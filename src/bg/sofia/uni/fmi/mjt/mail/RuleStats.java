@@ -0,0 +1,55 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// How often a rule was evaluated and matched, and what the evaluations cost. The counters are striped, so
+// deliveries evaluating the same rule on many threads do not contend on them. Evaluation time is sampled:
+// one evaluation in SAMPLE_RATE on average is timed and counted SAMPLE_RATE times, which keeps the two clock
+// reads off most evaluations of a rule that itself takes only nanoseconds.
+public class RuleStats {
+
+    static final int SAMPLE_RATE = 8;
+    private static final long NEVER = Long.MIN_VALUE;
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder sampledNanos = new LongAdder();
+    private final LongAccumulator lastMatchMillis = new LongAccumulator(Math::max, NEVER);
+
+    boolean shouldTime() {
+        return ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0;
+    }
+
+    void record(boolean matched) {
+        evaluations.increment();
+        if (matched) {
+            matches.increment();
+            lastMatchMillis.accumulate(System.currentTimeMillis());
+        }
+    }
+
+    void recordTimed(boolean matched, long nanos) {
+        record(matched);
+        sampledNanos.add(nanos);
+    }
+
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    // Estimated from the sampled evaluations.
+    public long getTotalNanos() {
+        return sampledNanos.sum() * SAMPLE_RATE;
+    }
+
+    public Instant getLastMatched() {
+        long millis = lastMatchMillis.get();
+        return millis == NEVER ? null : Instant.ofEpochMilli(millis);
+    }
+}
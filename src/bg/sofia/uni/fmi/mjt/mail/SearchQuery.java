@@ -0,0 +1,21 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+// Every condition is optional (null or empty) and all given conditions must hold. Terms are whole words
+// matched case-insensitively in the subject or the body; from and to are inclusive bounds on received.
+public record SearchQuery(Set<String> terms, String sender, String recipient, LocalDateTime from,
+                          LocalDateTime to, String folderPath) {
+
+    public SearchQuery {
+        terms = terms == null ? Set.of() : Set.copyOf(terms);
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Start of the date range is after its end");
+        }
+    }
+
+    public static SearchQuery ofTerms(String... terms) {
+        return new SearchQuery(Set.of(terms), null, null, null, null, null);
+    }
+}
@@ -0,0 +1,11 @@
+package bg.sofia.uni.fmi.mjt.mail.exceptions;
+
+public class StorageException extends RuntimeException {
+    public StorageException(String message) {
+        super(message);
+    }
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,36 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// One latency histogram per operation, found by the operation's ordinal; the count of a histogram is the
+// number of calls of its operation.
+public class HistogramMetricsRecorder implements MetricsRecorder {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private final LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+
+    public HistogramMetricsRecorder() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void stop(Operation operation, long startNanos) {
+        histograms[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public LatencySnapshot getSnapshot(Operation operation) {
+        return histograms[operation.ordinal()].snapshot();
+    }
+
+    public Map<Operation, LatencySnapshot> getSnapshots() {
+        Map<Operation, LatencySnapshot> snapshots = new EnumMap<>(Operation.class);
+        for (Operation operation : OPERATIONS) {
+            snapshots.put(operation, getSnapshot(operation));
+        }
+
+        return snapshots;
+    }
+}
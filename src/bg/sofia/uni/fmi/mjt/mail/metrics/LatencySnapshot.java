@@ -0,0 +1,8 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+// Latencies in nanoseconds; percentiles are the upper bound of the bucket they fall into.
+public record LatencySnapshot(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos,
+                              long p999Nanos, long maxNanos) {
+
+    public static final LatencySnapshot EMPTY = new LatencySnapshot(0, 0, 0, 0, 0, 0, 0);
+}
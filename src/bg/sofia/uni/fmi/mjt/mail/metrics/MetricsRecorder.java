@@ -0,0 +1,24 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+// Where Outlook reports how long its operations take: start() is called before an operation and stop() after
+// it with start()'s result. NONE does nothing in either, so a client without metrics only pays for two empty
+// calls on a final field, which the JIT inlines away.
+public interface MetricsRecorder {
+
+    MetricsRecorder NONE = new MetricsRecorder() {
+        @Override
+        public long start() {
+            return 0;
+        }
+
+        @Override
+        public void stop(Operation operation, long startNanos) {
+        }
+    };
+
+    default long start() {
+        return System.nanoTime();
+    }
+
+    void stop(Operation operation, long startNanos);
+}
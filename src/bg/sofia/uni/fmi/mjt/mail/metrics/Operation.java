@@ -0,0 +1,37 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+// Everything Outlook times: the MailClient methods and the internal stages mail goes through.
+public enum Operation {
+    ADD_NEW_ACCOUNT("addNewAccount"),
+    CREATE_FOLDER("createFolder"),
+    MOVE_FOLDER("moveFolder"),
+    DELETE_FOLDER("deleteFolder"),
+    LIST_FOLDERS("listFolders"),
+    COUNT_MAILS("countMails"),
+    GET_FOLDER_STATS("getFolderStats"),
+    GET_ACCOUNT_STATS("getAccountStats"),
+    ADD_RULE("addRule"),
+    RECEIVE_MAIL("receiveMail"),
+    RECEIVE_MAILS("receiveMails"),
+    GET_MAILS_FROM_FOLDER("getMailsFromFolder"),
+    GET_PAGE("getMailsFromFolder.page"),
+    GET_MAILS_RECEIVED_BETWEEN("getMailsReceivedBetween"),
+    GET_NEWEST_MAILS("getNewestMails"),
+    SEND_MAIL("sendMail"),
+    SEND_MAIL_ASYNC("sendMailAsync"),
+    SEARCH("search"),
+    PARSE_MAIL_METADATA("stage.parseMailMetadata"),
+    CHECK_FOR_BEST_RULE("stage.checkForBestRule"),
+    PUT_MAIL_IN_FOLDER("stage.putMailInFolder"),
+    CHECK_FOR_BETTER_FOLDERS("stage.checkForBetterFolders");
+
+    private final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,93 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// The histograms of a recorder as a platform MBean named bg.sofia.uni.fmi.mjt.mail:type=OutlookMetrics,name=...
+// Attributes are computed from a fresh snapshot on every read, so polling costs nothing between reads.
+public class OutlookMetrics implements OutlookMetricsMXBean {
+
+    private static final String DOMAIN = "bg.sofia.uni.fmi.mjt.mail";
+    private final HistogramMetricsRecorder recorder;
+    private final ObjectName objectName;
+
+    private OutlookMetrics(HistogramMetricsRecorder recorder, ObjectName objectName) {
+        this.recorder = recorder;
+        this.objectName = objectName;
+    }
+
+    public static OutlookMetrics register(HistogramMetricsRecorder recorder, String name) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=OutlookMetrics,name=" + ObjectName.quote(name));
+            OutlookMetrics metrics = new OutlookMetrics(recorder, objectName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+            return metrics;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics " + name, e);
+        }
+    }
+
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister metrics " + objectName, e);
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return byOperation(LatencySnapshot::count);
+    }
+
+    @Override
+    public Map<String, Long> getMeanNanos() {
+        return byOperation(snapshot -> Math.round(snapshot.meanNanos()));
+    }
+
+    @Override
+    public Map<String, Long> getP50Nanos() {
+        return byOperation(LatencySnapshot::p50Nanos);
+    }
+
+    @Override
+    public Map<String, Long> getP90Nanos() {
+        return byOperation(LatencySnapshot::p90Nanos);
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos() {
+        return byOperation(LatencySnapshot::p99Nanos);
+    }
+
+    @Override
+    public Map<String, Long> getP999Nanos() {
+        return byOperation(LatencySnapshot::p999Nanos);
+    }
+
+    @Override
+    public Map<String, Long> getMaxNanos() {
+        return byOperation(LatencySnapshot::maxNanos);
+    }
+
+    private Map<String, Long> byOperation(ToLongFunction<LatencySnapshot> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<Operation, LatencySnapshot> entry : recorder.getSnapshots().entrySet()) {
+            values.put(entry.getKey().label(), value.applyAsLong(entry.getValue()));
+        }
+
+        return values;
+    }
+}
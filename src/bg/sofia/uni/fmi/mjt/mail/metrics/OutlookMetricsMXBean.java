@@ -0,0 +1,22 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import java.util.Map;
+
+// Every attribute maps operation labels, e.g. "receiveMail" or "stage.checkForBestRule", to a value; latencies
+// are in nanoseconds.
+public interface OutlookMetricsMXBean {
+
+    Map<String, Long> getCounts();
+
+    Map<String, Long> getMeanNanos();
+
+    Map<String, Long> getP50Nanos();
+
+    Map<String, Long> getP90Nanos();
+
+    Map<String, Long> getP99Nanos();
+
+    Map<String, Long> getP999Nanos();
+
+    Map<String, Long> getMaxNanos();
+}
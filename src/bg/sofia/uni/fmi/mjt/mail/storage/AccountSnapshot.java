@@ -0,0 +1,12 @@
+package bg.sofia.uni.fmi.mjt.mail.storage;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.Rule;
+
+import java.util.List;
+import java.util.Map;
+
+// Everything stored for one account. Folders are listed parents first, each with its mails in folder order,
+// and rules in priority order.
+public record AccountSnapshot(String name, String email, Map<String, List<Mail>> folders, List<Mail> sentMails,
+                              List<Rule> rules) { }
@@ -0,0 +1,9 @@
+package bg.sofia.uni.fmi.mjt.mail.storage;
+
+// When a logged mutation reaches the disk. Every policy hands the records to the OS before the call returns,
+// so they survive a crash of the process; the policies differ in what survives a crash of the machine.
+public enum FsyncPolicy {
+    ALWAYS,     // Forced before the call returns; concurrent callers share one force (group commit)
+    INTERVAL,   // Forced by a background thread every few milliseconds
+    NONE        // Never forced explicitly, the OS writes the pages back whenever it decides to
+}
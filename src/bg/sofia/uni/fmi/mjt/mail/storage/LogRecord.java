@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.mail.storage;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+
+// One logged mutation. Stored mails are logged with the folder they ended up in, so replay does not depend on
+// classifying them again; rules are logged by their definition and re-parsed on replay.
+public sealed interface LogRecord {
+
+    record AddAccount(String accountName, String email) implements LogRecord { }
+
+    record CreateFolder(String accountName, String path) implements LogRecord { }
+
+    record MoveFolder(String accountName, String path, String newParentPath) implements LogRecord { }
+
+    record DeleteFolder(String accountName, String path) implements LogRecord { }
+
+    record AddRule(String accountName, String folderPath, String ruleDefinition, int priority)
+            implements LogRecord { }
+
+    record StoreMail(String accountName, String folderPath, Mail mail) implements LogRecord { }
+
+    record SentMail(String accountName, Mail mail) implements LogRecord { }
+}
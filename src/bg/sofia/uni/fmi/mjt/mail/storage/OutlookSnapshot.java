@@ -0,0 +1,7 @@
+package bg.sofia.uni.fmi.mjt.mail.storage;
+
+import java.util.List;
+
+// The whole client at a checkpoint. It contains every log record up to and including logEpoch, so recovery
+// replays a log only if the log's epoch is newer. Accounts owning their email come before ones sharing it.
+public record OutlookSnapshot(long logEpoch, List<AccountSnapshot> accounts) { }
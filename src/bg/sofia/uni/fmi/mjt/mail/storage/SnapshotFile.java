@@ -0,0 +1,465 @@
+package bg.sofia.uni.fmi.mjt.mail.storage;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.Rule;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.StorageException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Binary snapshot of the whole client. A dictionary holds every distinct string once, followed by every
+// distinct recipient set once; accounts, folders, mails and rules then refer to them by id. Counts and ids
+// are LEB128 varints, and a mail's timestamp is the zigzag varint delta to the previous mail of its folder,
+// which for mails stored in arrival order takes two or three bytes. Loaded mails share the dictionary's
+// strings, recipient sets and sender accounts instead of each holding a copy.
+public final class SnapshotFile {
+
+    private static final int MAGIC = 0x4d4f534e;                    // "MOSN"
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int NULL_ID = 0;
+    private static final long NO_TIMESTAMP = 0;
+
+    private SnapshotFile() {
+    }
+
+    // Written to a temporary file that is forced and then moved over the previous snapshot, so a crash
+    // leaves either the previous or the new snapshot, never a partial one.
+    public static void write(Path file, OutlookSnapshot snapshot) {
+        Dictionary dictionary = new Dictionary();
+        for (AccountSnapshot account : snapshot.accounts()) {
+            dictionary.addAccount(account);
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.writeInt(MAGIC);
+            out.writeVarInt(VERSION);
+            out.writeVarLong(snapshot.logEpoch());
+            dictionary.write(out);
+
+            out.writeVarInt(snapshot.accounts().size());
+            for (AccountSnapshot account : snapshot.accounts()) {
+                writeAccount(out, dictionary, account);
+            }
+
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            throw new StorageException("Could not write the snapshot " + file, e);
+        }
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new StorageException("Could not replace the snapshot " + file, e);
+        }
+    }
+
+    public static OutlookSnapshot read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            if (in.readInt() != MAGIC) {
+                throw new StorageException(file + " is not a mail snapshot");
+            }
+            int version = in.readVarInt();
+            if (version != VERSION) {
+                throw new StorageException("Unsupported snapshot version " + version);
+            }
+            long logEpoch = in.readVarLong();
+            Loaded loaded = Loaded.read(in);
+
+            int accountCount = in.readVarInt();
+            List<AccountSnapshot> accounts = new ArrayList<>(accountCount);
+            for (int i = 0; i < accountCount; i++) {
+                accounts.add(readAccount(in, loaded));
+            }
+
+            return new OutlookSnapshot(logEpoch, accounts);
+        } catch (IOException e) {
+            throw new StorageException("Could not read the snapshot " + file, e);
+        }
+    }
+
+    private static void writeAccount(Output out, Dictionary dictionary, AccountSnapshot account) throws IOException {
+        out.writeVarInt(dictionary.idOf(account.name()));
+        out.writeVarInt(dictionary.idOf(account.email()));
+
+        out.writeVarInt(account.folders().size());
+        for (Map.Entry<String, List<Mail>> folder : account.folders().entrySet()) {
+            out.writeVarInt(dictionary.idOf(folder.getKey()));
+            writeMails(out, dictionary, folder.getValue());
+        }
+        writeMails(out, dictionary, account.sentMails());
+
+        out.writeVarInt(account.rules().size());
+        for (Rule rule : account.rules()) {
+            out.writeVarInt(dictionary.idOf(rule.getFolderPath()));
+            out.writeVarInt(rule.getPriority());
+            out.writeVarInt(dictionary.idOf(rule.getSender()));
+            writeStrings(out, dictionary, rule.getSubjectIncludes());
+            writeStrings(out, dictionary, rule.getSubjectOrBodyIncludes());
+            writeStrings(out, dictionary, rule.getRecipientsEmails());
+        }
+    }
+
+    private static AccountSnapshot readAccount(Input in, Loaded loaded) throws IOException {
+        String name = loaded.string(in.readVarInt());
+        String email = loaded.string(in.readVarInt());
+
+        int folderCount = in.readVarInt();
+        Map<String, List<Mail>> folders = new LinkedHashMap<>();
+        for (int i = 0; i < folderCount; i++) {
+            String path = loaded.string(in.readVarInt());
+            folders.put(path, readMails(in, loaded));
+        }
+        List<Mail> sentMails = readMails(in, loaded);
+
+        int ruleCount = in.readVarInt();
+        List<Rule> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            String folderPath = loaded.string(in.readVarInt());
+            int priority = in.readVarInt();
+            String sender = loaded.string(in.readVarInt());
+            Set<String> subjectIncludes = readStrings(in, loaded);
+            Set<String> subjectOrBodyIncludes = readStrings(in, loaded);
+            Set<String> recipientsEmails = readStrings(in, loaded);
+            rules.add(new Rule(folderPath, priority, subjectIncludes, subjectOrBodyIncludes, recipientsEmails,
+                    sender));
+        }
+
+        return new AccountSnapshot(name, email, folders, sentMails, rules);
+    }
+
+    private static void writeMails(Output out, Dictionary dictionary, List<Mail> mails) throws IOException {
+        out.writeVarInt(mails.size());
+
+        long previousSecond = 0;
+        for (Mail mail : mails) {
+            out.writeVarInt(dictionary.idOf(mail.sender().emailAddress()));
+            out.writeVarInt(dictionary.idOf(mail.sender().name()));
+            out.writeVarInt(dictionary.setIdOf(mail.recipients()));
+            out.writeVarInt(dictionary.idOf(mail.subject()));
+            out.writeVarInt(dictionary.idOf(mail.body()));
+
+            LocalDateTime received = mail.received();
+            if (received == null) {
+                out.writeVarLong(NO_TIMESTAMP);
+            } else {
+                long second = received.toEpochSecond(ZoneOffset.UTC);
+                out.writeVarLong(zigzag(second - previousSecond) + 1);
+                out.writeVarInt(received.getNano());
+                previousSecond = second;
+            }
+        }
+    }
+
+    private static List<Mail> readMails(Input in, Loaded loaded) throws IOException {
+        int count = in.readVarInt();
+        List<Mail> mails = new ArrayList<>(count);
+
+        long previousSecond = 0;
+        for (int i = 0; i < count; i++) {
+            Account sender = loaded.account(in.readVarInt(), in.readVarInt());
+            Set<String> recipients = loaded.set(in.readVarInt());
+            String subject = loaded.string(in.readVarInt());
+            String body = loaded.string(in.readVarInt());
+
+            LocalDateTime received = null;
+            long timestamp = in.readVarLong();
+            if (timestamp != NO_TIMESTAMP) {
+                long second = previousSecond + unzigzag(timestamp - 1);
+                received = LocalDateTime.ofEpochSecond(second, in.readVarInt(), ZoneOffset.UTC);
+                previousSecond = second;
+            }
+
+            mails.add(new Mail(sender, recipients, subject, body, received));
+        }
+
+        return mails;
+    }
+
+    private static void writeStrings(Output out, Dictionary dictionary, Set<String> values) throws IOException {
+        out.writeVarInt(values.size());
+        for (String value : values) {
+            out.writeVarInt(dictionary.idOf(value));
+        }
+    }
+
+    private static Set<String> readStrings(Input in, Loaded loaded) throws IOException {
+        int count = in.readVarInt();
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            values.add(loaded.string(in.readVarInt()));
+        }
+
+        return values;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Ids in the order of first appearance; string id 0 stands for null.
+    private static final class Dictionary {
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<Set<String>, Integer> setIds = new HashMap<>();
+        private final List<Set<String>> sets = new ArrayList<>();
+
+        private void addAccount(AccountSnapshot account) {
+            add(account.name());
+            add(account.email());
+            for (Map.Entry<String, List<Mail>> folder : account.folders().entrySet()) {
+                add(folder.getKey());
+                addMails(folder.getValue());
+            }
+            addMails(account.sentMails());
+
+            for (Rule rule : account.rules()) {
+                add(rule.getFolderPath());
+                add(rule.getSender());
+                rule.getSubjectIncludes().forEach(this::add);
+                rule.getSubjectOrBodyIncludes().forEach(this::add);
+                rule.getRecipientsEmails().forEach(this::add);
+            }
+        }
+
+        private void addMails(List<Mail> mails) {
+            for (Mail mail : mails) {
+                add(mail.sender().emailAddress());
+                add(mail.sender().name());
+                add(mail.subject());
+                add(mail.body());
+
+                if (!setIds.containsKey(mail.recipients())) {
+                    setIds.put(mail.recipients(), sets.size());
+                    sets.add(mail.recipients());
+                    mail.recipients().forEach(this::add);
+                }
+            }
+        }
+
+        private void add(String value) {
+            if (value != null && !stringIds.containsKey(value)) {
+                strings.add(value);
+                stringIds.put(value, strings.size());
+            }
+        }
+
+        private int idOf(String value) {
+            return value == null ? NULL_ID : stringIds.get(value);
+        }
+
+        private int setIdOf(Set<String> set) {
+            return setIds.get(set);
+        }
+
+        private void write(Output out) throws IOException {
+            out.writeVarInt(strings.size());
+            for (String value : strings) {
+                out.writeString(value);
+            }
+
+            out.writeVarInt(sets.size());
+            for (Set<String> set : sets) {
+                out.writeVarInt(set.size());
+                for (String value : set) {
+                    out.writeVarInt(idOf(value));
+                }
+            }
+        }
+    }
+
+    private static final class Loaded {
+        private final String[] strings;
+        private final List<Set<String>> sets;
+        private final Map<Long, Account> accounts = new HashMap<>();
+
+        private Loaded(String[] strings, List<Set<String>> sets) {
+            this.strings = strings;
+            this.sets = sets;
+        }
+
+        private static Loaded read(Input in) throws IOException {
+            String[] strings = new String[in.readVarInt() + 1];
+            for (int i = 1; i < strings.length; i++) {
+                strings[i] = in.readString();
+            }
+
+            int setCount = in.readVarInt();
+            List<Set<String>> sets = new ArrayList<>(setCount);
+            for (int i = 0; i < setCount; i++) {
+                int size = in.readVarInt();
+                Set<String> set = new HashSet<>();
+                for (int j = 0; j < size; j++) {
+                    set.add(strings[in.readVarInt()]);
+                }
+                sets.add(Collections.unmodifiableSet(set));
+            }
+
+            return new Loaded(strings, sets);
+        }
+
+        private String string(int id) {
+            return strings[id];
+        }
+
+        private Set<String> set(int id) {
+            return sets.get(id);
+        }
+
+        private Account account(int emailId, int nameId) {
+            long key = ((long) emailId << Integer.SIZE) | nameId;
+            return accounts.computeIfAbsent(key, unused -> new Account(strings[emailId], strings[nameId]));
+        }
+    }
+
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void writeInt(int value) throws IOException {
+            ensureSpace(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            ensureSpace(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+
+            if (bytes.length > buffer.remaining()) {
+                flush();
+            }
+            if (bytes.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+        }
+
+        private void ensureSpace(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    private static final class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).flip();
+
+        private Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private int readInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        private int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                if (!buffer.hasRemaining()) {
+                    require(1);
+                }
+
+                byte next = buffer.get();
+                value |= (long) (next & 0x7F) << shift;
+                if (next >= 0) {
+                    return value;
+                }
+            }
+
+            throw new StorageException("Malformed varint in the snapshot");
+        }
+
+        private String readString() throws IOException {
+            int length = readVarInt();
+            byte[] bytes = new byte[length];
+
+            int read = 0;
+            while (read < length) {
+                if (!buffer.hasRemaining()) {
+                    require(1);
+                }
+                int chunk = Math.min(buffer.remaining(), length - read);
+                buffer.get(bytes, read, chunk);
+                read += chunk;
+            }
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new StorageException("The snapshot is truncated");
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package bg.sofia.uni.fmi.mjt.mail.storage;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.StorageException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+// Append-only log of mutations. The file starts with the log's epoch, which a checkpoint increments when it
+// empties the log, so a snapshot can tell whether the log still holds records it already contains. Every
+// record is framed as [length][crc32][type][payload], so recovery can tell a complete record from one torn by
+// a crash and cuts the file at the first record that does not check out.
+// Appending only copies the encoded record into a memory buffer and hands out a sequence number; sync() then
+// writes everything buffered so far with a single write (and a single force, depending on the policy), so
+// callers that sync concurrently are committed together instead of paying one force each. A write or force
+// that fails leaves the log failed: the batch may be partly on disk, so nothing more is appended after it,
+// and every sync still waiting for its records, now or later, fails instead of being told they are durable.
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final long DEFAULT_FORCE_INTERVAL_MILLIS = 10;
+    private static final int MAGIC = 0x4d4f574c;                    // "MOWL"
+    private static final int FILE_HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_BYTES = 1 << 30;
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+    private static final byte ADD_ACCOUNT = 1;
+    private static final byte CREATE_FOLDER = 2;
+    private static final byte ADD_RULE = 3;
+    private static final byte STORE_MAIL = 4;
+    private static final byte SENT_MAIL = 5;
+    private static final byte MOVE_FOLDER = 6;
+    private static final byte DELETE_FOLDER = 7;
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private final Object flushLock = new Object();
+    private final Thread forcer;
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);       // Guarded by this
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);         // Guarded by flushLock
+    private long appendedSequence;                                                 // Guarded by this
+    private volatile long writtenSequence;
+    private volatile long forcedSequence;
+    private volatile boolean closed;
+    private volatile StorageException failure;
+    private volatile long epoch;
+
+    private WriteAheadLog(FileChannel channel, FsyncPolicy policy, long forceIntervalMillis, long epoch) {
+        this.channel = channel;
+        this.policy = policy;
+        this.epoch = epoch;
+
+        if (policy == FsyncPolicy.INTERVAL) {
+            forcer = new Thread(() -> runForcer(forceIntervalMillis), "write-ahead-log-force");
+            forcer.setDaemon(true);
+            forcer.start();
+        } else {
+            forcer = null;
+        }
+    }
+
+    public static WriteAheadLog open(Path file, FsyncPolicy policy) {
+        return open(file, policy, DEFAULT_FORCE_INTERVAL_MILLIS);
+    }
+
+    public static WriteAheadLog open(Path file, FsyncPolicy policy, long forceIntervalMillis) {
+        if (file == null || policy == null) {
+            throw new IllegalArgumentException("Log file and fsync policy can not be null");
+        }
+        if (forceIntervalMillis < 1) {
+            throw new IllegalArgumentException("Force interval must be positive");
+        }
+
+        try {
+            return open(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE), policy, forceIntervalMillis);
+        } catch (IOException e) {
+            throw new StorageException("Could not open the log " + file, e);
+        }
+    }
+
+    static WriteAheadLog open(FileChannel channel, FsyncPolicy policy, long forceIntervalMillis) throws IOException {
+        long epoch = channel.size() < FILE_HEADER_BYTES ? writeFileHeader(channel, 0) : readEpoch(channel);
+        channel.position(channel.size());
+        return new WriteAheadLog(channel, policy, forceIntervalMillis, epoch);
+    }
+
+    // Reads every complete record in order. A torn or corrupted tail, as left by a crash in the middle of a
+    // write, is cut off so that new records are appended right after the last good one. A record that passes
+    // its checksum but can not be decoded was written that way, so it is reported rather than cut off.
+    public static Recovery recover(Path file) {
+        List<LogRecord> records = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return new Recovery(0, records);
+        }
+
+        long epoch = 0;
+        long validBytes = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new StorageException(file + " is not a mail log");
+            }
+            epoch = in.readLong();
+            validBytes = FILE_HEADER_BYTES;
+
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+
+                byte[] body = new byte[length];
+                in.readFully(body);
+                if (checksum(body) != checksum) {
+                    break;
+                }
+
+                try {
+                    records.add(decode(body));
+                } catch (IOException | RuntimeException e) {
+                    throw new StorageException("Corrupted record at byte " + validBytes + " of " + file, e);
+                }
+                validBytes += HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // Clean end of the log or a torn record, either way everything before validBytes is intact
+        } catch (IOException e) {
+            throw new StorageException("Could not read the log " + file, e);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > validBytes) {
+                channel.truncate(validBytes);
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new StorageException("Could not truncate the log " + file, e);
+        }
+
+        return new Recovery(epoch, records);
+    }
+
+    public long append(LogRecord record) {
+        byte[] body = encode(record);
+
+        synchronized (this) {
+            if (closed) {
+                throw new StorageException("The log is closed");
+            }
+            checkNotFailed();
+
+            pending = ensureCapacity(pending, HEADER_BYTES + body.length);
+            pending.putInt(body.length).putInt(checksum(body)).put(body);
+            return ++appendedSequence;
+        }
+    }
+
+    // Makes every record appended so far as durable as the policy promises before returning.
+    public void sync() {
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+
+        sync(sequence);
+    }
+
+    public void sync(long sequence) {
+        boolean force = policy == FsyncPolicy.ALWAYS;
+        if (isDone(sequence, force)) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            checkNotFailed();
+            if (!isDone(sequence, force)) {      // The previous holder may have committed this record already
+                flush(force);
+            }
+        }
+    }
+
+    // Drops every record and starts the given epoch; only for a checkpoint that has just made them redundant.
+    // Callers must make sure nothing is appended concurrently.
+    public void reset(long newEpoch) {
+        synchronized (flushLock) {
+            synchronized (this) {
+                checkNotFailed();
+                try {
+                    pending.clear();
+                    channel.truncate(0);
+                    writeFileHeader(channel, newEpoch);
+                    channel.force(true);
+                } catch (IOException e) {
+                    throw new StorageException("Could not reset the log", e);
+                }
+
+                epoch = newEpoch;
+                writtenSequence = appendedSequence;
+                forcedSequence = appendedSequence;
+            }
+        }
+    }
+
+    public long epoch() {
+        return epoch;
+    }
+
+    public long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new StorageException("Could not read the log size", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        if (forcer != null) {
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+            try {
+                forcer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            synchronized (flushLock) {
+                if (failure == null) {
+                    flush(policy != FsyncPolicy.NONE);
+                }
+            }
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new StorageException("Could not close the log", e);
+            }
+        }
+    }
+
+    private void checkNotFailed() {
+        StorageException cause = failure;
+        if (cause != null) {
+            throw new StorageException("The log failed and accepts no more records", cause);
+        }
+    }
+
+    private boolean isDone(long sequence, boolean force) {
+        return (force ? forcedSequence : writtenSequence) >= sequence;
+    }
+
+    private void flush(boolean force) {
+        ByteBuffer full;
+        long sequence;
+        synchronized (this) {
+            full = pending;
+            sequence = appendedSequence;
+            pending = spare;
+        }
+
+        try {
+            full.flip();
+            while (full.hasRemaining()) {
+                channel.write(full);
+            }
+            if (force && forcedSequence < sequence) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            StorageException cause = new StorageException("Could not write to the log", e);
+            failure = cause;
+            throw cause;
+        }
+        full.clear();
+        spare = full;
+
+        writtenSequence = sequence;
+        if (force) {
+            forcedSequence = sequence;
+        }
+    }
+
+    // Waits on the flush lock rather than sleeping: interrupting a thread inside a FileChannel operation would
+    // close the channel, so the forcer is woken up by close() instead of being interrupted.
+    private void runForcer(long intervalMillis) {
+        synchronized (flushLock) {
+            while (!closed) {
+                try {
+                    flushLock.wait(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (!closed) {
+                    try {
+                        flush(true);
+                    } catch (StorageException e) {
+                        return;                         // The log has failed, syncs report it from now on
+                    }
+                }
+            }
+        }
+    }
+
+    private static long writeFileHeader(FileChannel channel, long epoch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putLong(epoch).flip();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        return epoch;
+    }
+
+    private static long readEpoch(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Positional reads until the header is complete
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new StorageException("Not a mail log");
+        }
+
+        return header.getLong();
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int required) {
+        if (buffer.remaining() >= required) {
+            return buffer;
+        }
+
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + required));
+        buffer.flip();
+        return grown.put(buffer);
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(LogRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (record instanceof LogRecord.AddAccount addAccount) {
+                out.writeByte(ADD_ACCOUNT);
+                writeString(out, addAccount.accountName());
+                writeString(out, addAccount.email());
+            } else if (record instanceof LogRecord.CreateFolder createFolder) {
+                out.writeByte(CREATE_FOLDER);
+                writeString(out, createFolder.accountName());
+                writeString(out, createFolder.path());
+            } else if (record instanceof LogRecord.AddRule addRule) {
+                out.writeByte(ADD_RULE);
+                writeString(out, addRule.accountName());
+                writeString(out, addRule.folderPath());
+                writeString(out, addRule.ruleDefinition());
+                out.writeInt(addRule.priority());
+            } else if (record instanceof LogRecord.StoreMail storeMail) {
+                out.writeByte(STORE_MAIL);
+                writeString(out, storeMail.accountName());
+                writeString(out, storeMail.folderPath());
+                writeMail(out, storeMail.mail());
+            } else if (record instanceof LogRecord.SentMail sentMail) {
+                out.writeByte(SENT_MAIL);
+                writeString(out, sentMail.accountName());
+                writeMail(out, sentMail.mail());
+            } else if (record instanceof LogRecord.MoveFolder moveFolder) {
+                out.writeByte(MOVE_FOLDER);
+                writeString(out, moveFolder.accountName());
+                writeString(out, moveFolder.path());
+                writeString(out, moveFolder.newParentPath());
+            } else if (record instanceof LogRecord.DeleteFolder deleteFolder) {
+                out.writeByte(DELETE_FOLDER);
+                writeString(out, deleteFolder.accountName());
+                writeString(out, deleteFolder.path());
+            }
+        } catch (IOException e) {
+            throw new StorageException("Could not encode a log record", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static LogRecord decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+
+        return switch (type) {
+            case ADD_ACCOUNT -> new LogRecord.AddAccount(readString(in), readString(in));
+            case CREATE_FOLDER -> new LogRecord.CreateFolder(readString(in), readString(in));
+            case ADD_RULE -> new LogRecord.AddRule(readString(in), readString(in), readString(in), in.readInt());
+            case STORE_MAIL -> new LogRecord.StoreMail(readString(in), readString(in), readMail(in));
+            case SENT_MAIL -> new LogRecord.SentMail(readString(in), readMail(in));
+            case MOVE_FOLDER -> new LogRecord.MoveFolder(readString(in), readString(in), readString(in));
+            case DELETE_FOLDER -> new LogRecord.DeleteFolder(readString(in), readString(in));
+            default -> throw new StorageException("Unknown log record type " + type);
+        };
+    }
+
+    private static void writeMail(DataOutputStream out, Mail mail) throws IOException {
+        writeString(out, mail.sender().emailAddress());
+        writeString(out, mail.sender().name());
+        out.writeInt(mail.recipients().size());
+        for (String recipient : mail.recipients()) {
+            writeString(out, recipient);
+        }
+        writeString(out, mail.subject());
+        writeString(out, mail.body());
+
+        LocalDateTime received = mail.received();
+        out.writeBoolean(received != null);
+        if (received != null) {
+            out.writeLong(received.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(received.getNano());
+        }
+    }
+
+    private static Mail readMail(DataInputStream in) throws IOException {
+        Account sender = new Account(readString(in), readString(in));
+        int recipientCount = in.readInt();
+        Set<String> recipients = new HashSet<>();
+        for (int i = 0; i < recipientCount; i++) {
+            recipients.add(readString(in));
+        }
+        String subject = readString(in);
+        String body = readString(in);
+
+        LocalDateTime received = null;
+        if (in.readBoolean()) {
+            received = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+        }
+
+        return new Mail(sender, Collections.unmodifiableSet(recipients), subject, body, received);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public record Recovery(long epoch, List<LogRecord> records) { }
+}
@@ -0,0 +1,56 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountAlreadyExistsException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccountRegistryTest {
+
+    @Test
+    void testRegisterIndexesByNameAndEmail() {
+        AccountRegistry registry = new AccountRegistry();
+        Account account = registry.register("Nikolay", "niki@abv.bg");
+
+        assertEquals(account, registry.getByName("Nikolay"), "Account was expected to be found by name");
+        assertEquals(account, registry.getByEmail("niki@abv.bg"), "Account was expected to be found by email");
+        assertTrue(registry.containsName("Nikolay"), "Registered name was expected to be present");
+        assertTrue(registry.containsEmail("niki@abv.bg"), "Registered email was expected to be present");
+        assertEquals(1, registry.size(), "Registry was expected to contain one account");
+    }
+
+    @Test
+    void testLookupMissingAccount() {
+        AccountRegistry registry = new AccountRegistry();
+        registry.register("Nikolay", "niki@abv.bg");
+
+        assertNull(registry.getByName("Gosho"), "Missing name was expected to return null");
+        assertNull(registry.getByEmail("gosho@abv.bg"), "Missing email was expected to return null");
+        assertFalse(registry.containsEmail("gosho@abv.bg"), "Missing email was not expected to be present");
+    }
+
+    @Test
+    void testRegisterAlreadyExisted() {
+        AccountRegistry registry = new AccountRegistry();
+        registry.register("Nikolay", "niki@abv.bg");
+
+        assertThrows(AccountAlreadyExistsException.class, () -> registry.register("Nikolay", "other@abv.bg"),
+                "AccountAlreadyExistsException was expected when registering the same name twice");
+        assertEquals(1, registry.getAllAccounts().size(), "Rejected account must not be added");
+    }
+
+    @Test
+    void testRegisterSameEmailKeepsFirstOwner() {
+        AccountRegistry registry = new AccountRegistry();
+        Account first = registry.register("Nikolay", "niki@abv.bg");
+        registry.register("Niki", "niki@abv.bg");
+
+        assertEquals(first, registry.getByEmail("niki@abv.bg"),
+                "Email lookup was expected to resolve to the first account registered with it");
+        assertEquals(2, registry.size(), "Both accounts were expected to be registered");
+    }
+}
@@ -0,0 +1,67 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class AccountRulesTest {
+
+    private static Rule rule(String folder, int priority, String definition) {
+        Rule rule = new Rule(folder, priority);
+        rule.parseRuleDefinition(definition);
+        return rule;
+    }
+
+    private static Mail mail(String sender, Set<String> recipients, String subject, String body) {
+        return new Mail(new Account(sender, "Sender"), recipients, subject, body, LocalDateTime.now());
+    }
+
+    @Test
+    void testFindBestRuleUsesCompiledKeywords() {
+        AccountRules rules = new AccountRules();
+        Rule rule = rule("/inbox/sport", 2, "subject-includes: cup" + System.lineSeparator() +
+                "subject-or-body-includes: watching, final");
+        rules.addRule(rule);
+
+        Mail mail = mail("niki@abv.bg", Set.of("ivan@abv.bg"), "world cup", "Everyone is watching the final today");
+        Mail other = mail("niki@abv.bg", Set.of("ivan@abv.bg"), "world cup", "Everyone is at home");
+
+        assertEquals(rule, rules.findBestRule(mail), "Mail was expected to match the compiled rule");
+        assertNull(rules.findBestRule(other), "Mail without body keywords must not match");
+    }
+
+    @Test
+    void testFindBestRuleDispatchesBySenderAndRecipient() {
+        AccountRules rules = new AccountRules();
+        Rule fromGosho = rule("/inbox/gosho", 3, "from: gosho@abv.bg" + System.lineSeparator() +
+                "subject-includes: mjt");
+        Rule toTeam = rule("/inbox/team", 5, "recipients-includes: team@abv.bg, all@abv.bg" +
+                System.lineSeparator() + "subject-includes: mjt");
+        rules.addRule(fromGosho);
+        rules.addRule(toTeam);
+
+        assertEquals(fromGosho, rules.findBestRule(mail("gosho@abv.bg", Set.of("team@abv.bg"), "mjt", "body")),
+                "Rule with higher priority was expected when both sender and recipient rules match");
+        assertEquals(toTeam, rules.findBestRule(mail("pesho@abv.bg", Set.of("all@abv.bg"), "mjt", "body")),
+                "Recipient rule was expected to match when the sender rule does not apply");
+        assertNull(rules.findBestRule(mail("pesho@abv.bg", Set.of("niki@abv.bg"), "mjt", "body")),
+                "No rule was expected to match when neither sender nor recipients are indexed");
+    }
+
+    @Test
+    void testFindBestRulePrefersHigherPriorityUnaddressedRule() {
+        AccountRules rules = new AccountRules();
+        Rule fromGosho = rule("/inbox/gosho", 4, "from: gosho@abv.bg" + System.lineSeparator() +
+                "subject-includes: mjt");
+        Rule anyMjt = rule("/inbox/mjt", 1, "subject-or-body-includes: mjt");
+        rules.addRule(fromGosho);
+        rules.addRule(anyMjt);
+
+        assertEquals(anyMjt, rules.findBestRule(mail("gosho@abv.bg", Set.of("niki@abv.bg"), "mjt", "body")),
+                "Rule without address condition with higher priority was expected to win");
+    }
+}
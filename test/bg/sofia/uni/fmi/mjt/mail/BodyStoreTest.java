@@ -0,0 +1,45 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class BodyStoreTest {
+
+    @Test
+    void testInternReturnsCanonicalBody() {
+        BodyStore store = new BodyStore();
+        String first = new String("Weekly newsletter");
+        String second = new String("Weekly newsletter");
+        assertNotSame(first, second);
+
+        assertSame(first, store.intern(first), "First body was expected to become the canonical one");
+        assertSame(first, store.intern(second), "Equal body was expected to resolve to the canonical one");
+        assertEquals("Other body", store.intern("Other body"), "Different body was expected to be kept as is");
+        assertNull(store.intern(null), "Null body was expected to stay null");
+
+        BodyStore.BodyStoreStats stats = store.getStats();
+        assertEquals(2, stats.distinctBodies(), "Store was expected to hold two distinct bodies");
+        assertEquals(3, stats.lookups(), "Store was expected to count three lookups");
+        assertEquals(1, stats.deduplicated(), "Store was expected to deduplicate one body");
+        assertEquals("Weekly newsletter".length(), stats.savedChars(), "Saved chars were expected to be counted");
+    }
+
+    @Test
+    void testReceivedMailsShareBody() {
+        Outlook outlook = new Outlook();
+        outlook.addNewAccount("Nikolay", "niki@abv.bg");
+        outlook.addNewAccount("Ivan", "ivan@abv.bg");
+        String metadata = "sender: news@fmi.bg" + System.lineSeparator() + "subject: News";
+
+        outlook.receiveMail("Nikolay", metadata, new String("MJT news of the week"));
+        outlook.receiveMail("Ivan", metadata, new String("MJT news of the week"));
+
+        Mail first = outlook.getMailsFromFolder("Nikolay", "/inbox").iterator().next();
+        Mail second = outlook.getMailsFromFolder("Ivan", "/inbox").iterator().next();
+        assertSame(first.body(), second.body(), "Identical bodies were expected to be stored once");
+    }
+}
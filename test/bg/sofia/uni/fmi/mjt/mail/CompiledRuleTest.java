@@ -0,0 +1,43 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompiledRuleTest {
+
+    private final Mail mail = new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of("ivan@abv.bg", "stoyo@abv.bg"),
+            "MJT 2022 exam", "The exam is hard", LocalDateTime.of(2022, 12, 8, 14, 14));
+
+    private boolean matches(String sender, Set<String> recipients, Set<String> subject, Set<String> subjectOrBody) {
+        CompiledRule rule = CompiledRule.compile(sender, recipients, subject, subjectOrBody);
+        return rule.matches(mail, new DirectKeywordScan(mail));
+    }
+
+    @Test
+    void testRuleWithoutConditionsMatchesNothing() {
+        assertFalse(matches(null, Set.of(), Set.of(), Set.of()), "A rule without conditions was expected to not match");
+        assertFalse(matches("niki@abv.bg", Set.of(), Set.of(), Set.of()),
+                "A rule with only a sender was expected to not match");
+    }
+
+    @Test
+    void testSingleConditionsMatchLikeMultiple() {
+        assertTrue(matches("niki@abv.bg", Set.of("ivan@abv.bg"), Set.of("MJT"), Set.of("hard")),
+                "Single recipient and keywords were expected to match");
+        assertTrue(matches(null, Set.of("gosho@abv.bg", "stoyo@abv.bg"), Set.of("MJT", "2022"), Set.of("exam", "hard")),
+                "Any recipient and all keywords were expected to match");
+        assertFalse(matches("gosho@abv.bg", Set.of("ivan@abv.bg"), Set.of("MJT"), Set.of()),
+                "A different sender was expected to not match");
+        assertFalse(matches(null, Set.of("gosho@abv.bg"), Set.of(), Set.of()),
+                "A rule without any of the mail's recipients was expected to not match");
+        assertFalse(matches(null, Set.of(), Set.of("MJT", "easy"), Set.of()),
+                "Every subject keyword was expected to be required");
+        assertFalse(matches(null, Set.of(), Set.of(), Set.of("hard", "easy")),
+                "Every subject or body keyword was expected to be required");
+    }
+}
@@ -0,0 +1,149 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FolderTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2022, 12, 8, 12, 0);
+
+    @Test
+    void testRangeIsOrderedByReceivedTime() {
+        Folder folder = new Folder();
+        Mail late = mail("late", NOON.plusHours(5));
+        Mail early = mail("early", NOON.minusHours(5));
+        Mail undated = mail("undated", null);
+        Mail noon = mail("noon", NOON);
+        Mail sameNoon = mail("same noon", NOON);
+        folder.addAll(List.of(late, early, undated, noon, sameNoon));
+
+        assertEquals(List.of(early, noon, sameNoon), folder.getMailsReceivedBetween(null, NOON),
+                "Open start was expected to return every dated mail up to the end, oldest first");
+        assertEquals(List.of(noon, sameNoon, late), folder.getMailsReceivedBetween(NOON, null),
+                "Equal times were expected in arrival order and the range to be inclusive");
+        assertEquals(List.of(late, early, undated, noon, sameNoon), folder.getMails(),
+                "Arrival order was expected to be unchanged");
+    }
+
+    @Test
+    void testNewestMailsPutUndatedLast() {
+        Folder folder = new Folder();
+        Mail undated = mail("undated", null);
+        Mail early = mail("early", NOON.minusDays(1));
+        Mail late = mail("late", NOON);
+        folder.add(undated);
+        folder.add(early);
+        folder.add(late);
+
+        assertEquals(List.of(late, early), folder.getNewestMails(2), "Newest mails were expected first");
+        assertEquals(List.of(late, early, undated), folder.getNewestMails(10),
+                "Mails without a received time were expected last");
+    }
+
+    @Test
+    void testReplacePrefixDropsRemovedMailsFromTimeOrder() {
+        Folder folder = new Folder();
+        Mail first = mail("first", NOON);
+        Mail moved = mail("moved", NOON.plusHours(1));
+        Mail third = mail("third", NOON.plusHours(2));
+        folder.addAll(List.of(first, moved, third));
+        Mail appended = mail("appended", NOON.minusHours(1));
+        folder.add(appended);
+
+        folder.replacePrefix(3, List.of(first, third));
+
+        assertEquals(List.of(first, third, appended), folder.getMails(), "Appended mail was expected to be kept");
+        assertEquals(List.of(appended, first, third), folder.getMailsReceivedBetween(null, null),
+                "Removed mail was expected to leave the time order");
+    }
+
+    @Test
+    void testPageWalkSurvivesAppendsAndRemovals() {
+        Folder folder = new Folder();
+        List<Mail> mails = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            mails.add(mail("mail " + i, NOON.plusMinutes(i)));
+        }
+        folder.addAll(mails);
+
+        Page first = folder.getPage(null, 2);
+        assertEquals(mails.subList(0, 2), first.mails(), "First page was expected to start the folder");
+        assertEquals(5, first.totalCount(), "Total count was expected to be the folder size");
+
+        Mail appended = mail("appended", NOON);
+        folder.add(appended);
+        folder.replacePrefix(5, List.of(mails.get(0), mails.get(1), mails.get(3), mails.get(4)));
+
+        Page second = folder.getPage(first.nextPageToken(), 2);
+        assertEquals(List.of(mails.get(3), mails.get(4)), second.mails(),
+                "Removed mail was expected to be skipped without repeating the first page");
+        Page third = folder.getPage(second.nextPageToken(), 2);
+        assertEquals(List.of(appended), third.mails(), "Appended mail was expected on the last page");
+        assertNull(third.nextPageToken(), "Last page was not expected to have a next token");
+    }
+
+    @Test
+    void testReplacePrefixRejectsMailsMovedIn() {
+        Folder folder = new Folder();
+        Mail first = mail("first", NOON);
+        Mail second = mail("second", NOON.plusMinutes(1));
+        folder.addAll(List.of(first, second));
+        Page page = folder.getPage(null, 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> folder.replacePrefix(2, List.of(first, mail("moved in", NOON), second)),
+                "Replacement adding a mail was expected to be rejected");
+        assertThrows(IllegalArgumentException.class, () -> folder.replacePrefix(2, List.of(second, first)),
+                "Replacement reordering the mails was expected to be rejected");
+        assertEquals(List.of(first, second), folder.getMails(), "Rejected replacement was expected to change nothing");
+        assertEquals(List.of(first, second), folder.getMailsReceivedBetween(null, null),
+                "Rejected replacement was expected to leave the time order");
+        assertEquals(List.of(second), folder.getPage(page.nextPageToken(), 1).mails(),
+                "Page walk was expected to go on after a rejected replacement");
+    }
+
+    @Test
+    void testPageIsReadOnlyAndTokenIsValidated() {
+        Folder folder = new Folder();
+        folder.add(mail("only", NOON));
+
+        Page page = folder.getPage(null, 10);
+        assertThrows(UnsupportedOperationException.class, () -> page.mails().add(mail("other", NOON)),
+                "Page was expected to be read-only");
+        assertThrows(IllegalArgumentException.class, () -> folder.getPage("not a token!", 10),
+                "Malformed token was expected to be rejected");
+    }
+
+    @Test
+    void testStatsFollowAddsAndRemovals() {
+        Folder folder = new Folder();
+        Mail early = mail("early", NOON.minusHours(1));
+        Mail late = mail("late", NOON.plusHours(1));
+        Mail undated = mail("\u00dcnd", null);
+        folder.addAll(List.of(early, late));
+        folder.add(undated);
+
+        FolderStats stats = folder.getStats();
+        assertEquals(3, stats.mailCount(), "Every added mail was expected to be counted");
+        assertEquals(Folder.sizeOf(early) + Folder.sizeOf(late) + Folder.sizeOf(undated), stats.totalBytes(),
+                "Bytes of every added mail were expected to be summed");
+        assertEquals(4 + 4 + 11, Folder.sizeOf(undated), "Sizes were expected in UTF-8 bytes");
+        assertEquals(late.received(), stats.newestReceived(), "Newest received time was expected");
+
+        folder.replacePrefix(3, List.of(early, undated));
+        assertEquals(new FolderStats(2, Folder.sizeOf(early) + Folder.sizeOf(undated), early.received()),
+                folder.getStats(), "Removed mail was expected to leave the statistics");
+    }
+
+    private static Mail mail(String subject, LocalDateTime received) {
+        return new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of(), subject, "body", received);
+    }
+}
@@ -1,6 +1,7 @@
 package bg.sofia.uni.fmi.mjt.mail;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -137,4 +138,140 @@ public class InboxTest {
         assertIterableEquals(importantMails, inbox.getMailsFromFolder("/inbox/important"),
                 "Error: mail was expected to be in new folder after matching better rule");
     }
+
+    @Test
+    void testCheckForBetterFoldersWithNewRuleOnly() {
+        Inbox inbox = new Inbox();
+
+        Set<String> mailRecipients = new HashSet<>();
+        mailRecipients.add("stoyo@gmail.com");
+
+        Mail football = new Mail(new Account("niki@abv.bg", "Nikolay"), mailRecipients, "football world cup final",
+                "Everyone is watching the final today", LocalDateTime.now());
+        Mail exam = new Mail(new Account("niki@abv.bg", "Nikolay"), mailRecipients, "mjt exam",
+                "The exam is tomorrow", LocalDateTime.now());
+
+        inbox.createFolder("/inbox/sport");
+        inbox.putMailInFolder("/inbox", football);
+        inbox.putMailInFolder("/inbox", exam);
+
+        Rule newRule = new Rule("/inbox/sport", 3);
+        newRule.parseRuleDefinition("subject-or-body-includes: final");
+        inbox.checkForBetterFolders(newRule);
+
+        assertIterableEquals(List.of(exam), inbox.getMailsFromFolder("/inbox"),
+                "Error: mail not matching the new rule must stay in /inbox");
+        assertIterableEquals(List.of(football), inbox.getMailsFromFolder("/inbox/sport"),
+                "Error: mail matching the new rule was expected to move to its folder");
+    }
+
+    @Test
+    void testCheckForBetterFoldersLargeInboxKeepsOrder() {
+        Inbox inbox = new Inbox();
+        inbox.createFolder("/inbox/even");
+
+        List<Mail> evenMails = new ArrayList<>();
+        List<Mail> oddMails = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            Mail mail = new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of("stoyo@gmail.com"),
+                    (i % 2 == 0 ? "even " : "odd ") + i, "body", LocalDateTime.now());
+            inbox.putMailInFolder("/inbox", mail);
+            (i % 2 == 0 ? evenMails : oddMails).add(mail);
+        }
+
+        Rule newRule = new Rule("/inbox/even", 1);
+        newRule.parseRuleDefinition("subject-includes: even");
+        inbox.checkForBetterFolders(newRule);
+
+        assertIterableEquals(oddMails, inbox.getMailsFromFolder("/inbox"),
+                "Error: not matched mails must stay in /inbox in their original order");
+        assertIterableEquals(evenMails, inbox.getMailsFromFolder("/inbox/even"),
+                "Error: matched mails were expected to be moved in their original order");
+    }
+
+    @Test
+    void testListFoldersAndCountMailsOfSubtree() {
+        Inbox inbox = new Inbox();
+        inbox.createFolder("/inbox/work");
+        inbox.createFolder("/inbox/work/reports");
+        inbox.createFolder("/inbox/personal");
+        inbox.putMailInFolder("/inbox/work", mail("Standup"));
+        inbox.putMailInFolder("/inbox/work/reports", mail("Q4"));
+        inbox.putMailInFolder("/inbox/personal", mail("Dinner"));
+
+        assertEquals(List.of("/inbox/work", "/inbox/work/reports"), inbox.listFolders("/inbox/work"),
+                "Error: listing was expected to contain the folder and its subfolders, parents first");
+        assertEquals(List.of("/inbox", "/inbox/personal", "/inbox/work", "/inbox/work/reports"),
+                inbox.getFolderPaths(), "Error: every folder was expected to be listed");
+        assertEquals(2, inbox.countMails("/inbox/work"), "Error: mails of subfolders were expected to be counted");
+        assertEquals(3, inbox.countMails("/inbox"), "Error: every mail was expected to be counted");
+    }
+
+    @Test
+    void testMoveFolderKeepsSubtreeAndMails() {
+        Inbox inbox = new Inbox();
+        inbox.createFolder("/inbox/work");
+        inbox.createFolder("/inbox/work/reports");
+        inbox.createFolder("/inbox/archive");
+        Mail report = mail("Q4 report");
+        inbox.putMailInFolder("/inbox/work/reports", report);
+
+        inbox.moveFolder("/inbox/work", "/inbox/archive");
+
+        assertFalse(inbox.checkIfFolderExists("/inbox/work"), "Error: moved folder must leave its old path");
+        assertIterableEquals(List.of(report), inbox.getMailsFromFolder("/inbox/archive/work/reports"),
+                "Error: subfolders were expected to move with their mails");
+        assertEquals(List.of(report), inbox.search(new SearchQuery(Set.of("report"), null, null, null, null,
+                "/inbox/archive/work/reports")), "Error: search was expected to follow the moved folder");
+        assertThrows(InvalidPathException.class, () -> inbox.moveFolder("/inbox/archive", "/inbox/archive/work"),
+                "Error: a folder can not be moved below itself");
+        assertThrows(InvalidPathException.class, () -> inbox.moveFolder("/inbox", "/inbox/archive"),
+                "Error: the root folder can not be moved");
+    }
+
+    @Test
+    void testDeleteFolderRemovesSubtreeFromSearch() {
+        Inbox inbox = new Inbox();
+        inbox.createFolder("/inbox/old");
+        inbox.createFolder("/inbox/old/2021");
+        inbox.putMailInFolder("/inbox/old/2021", mail("Archived report"));
+        inbox.putMailInFolder("/inbox", mail("Fresh report"));
+
+        inbox.deleteFolder("/inbox/old");
+
+        assertFalse(inbox.checkIfFolderExists("/inbox/old/2021"), "Error: subfolders were expected to be deleted");
+        assertEquals(1, inbox.search(SearchQuery.ofTerms("report")).size(),
+                "Error: mails of deleted folders must not be found");
+        assertThrows(FolderNotFoundException.class, () -> inbox.deleteFolder("/inbox/old"),
+                "Error: a missing folder can not be deleted");
+        assertThrows(InvalidPathException.class, () -> inbox.deleteFolder("/inbox"),
+                "Error: the root folder can not be deleted");
+    }
+
+    @Test
+    void testDeleteFolderDropsItsMails() {
+        Inbox inbox = new Inbox();
+        inbox.createFolder("/inbox/old");
+        inbox.createFolder("/inbox/old/deep");
+        Mail kept = mail("Kept report");
+        inbox.putMailInFolder("/inbox", kept);
+        inbox.putMailInFolder("/inbox/old", new Mail(kept.sender(), kept.recipients(), "Archived report", "body",
+                kept.received().plusDays(1)));
+        inbox.putMailInFolder("/inbox/old/deep", mail("Archived deeper"));
+
+        inbox.deleteFolder("/inbox/old");
+
+        assertEquals(List.of(kept), inbox.search(SearchQuery.ofTerms("report")),
+                "Error: mails of a deleted folder were not expected to be found");
+        assertEquals(List.of(), inbox.search(SearchQuery.ofTerms("archived")),
+                "Error: mails of a deleted subfolder were not expected to be found");
+        assertEquals(1, inbox.countMails("/inbox"), "Error: only the remaining mail was expected to be counted");
+        assertEquals(new FolderStats(1, Folder.sizeOf(kept), kept.received()), inbox.getStats(),
+                "Error: account stats were expected to drop the deleted mails and their newest time");
+    }
+
+    private static Mail mail(String subject) {
+        return new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of("stoyo@gmail.com"), subject, "body",
+                LocalDateTime.of(2022, 12, 8, 14, 14));
+    }
 }
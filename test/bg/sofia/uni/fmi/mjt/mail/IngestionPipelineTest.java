@@ -0,0 +1,77 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IngestionPipelineTest {
+
+    private static String metadata(String subject) {
+        return "sender: gosho@abv.bg" + System.lineSeparator() +
+                "subject: " + subject + System.lineSeparator() +
+                "recipients: niki@abv.bg" + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+    }
+
+    @Test
+    void testPipelineKeepsFolderOrder() throws Exception {
+        Outlook outlook = new Outlook();
+        outlook.addNewAccount("Nikolay", "niki@abv.bg");
+        outlook.createFolder("Nikolay", "/inbox/mjt");
+        outlook.addRule("Nikolay", "/inbox/mjt", "subject-includes: mjt", 1);
+
+        List<String> expectedMjt = new ArrayList<>();
+        List<String> expectedInbox = new ArrayList<>();
+        List<CompletableFuture<DeliveryResult>> results = new ArrayList<>();
+        try (IngestionPipeline pipeline = new IngestionPipeline(outlook, 4, 4, 2, 16)) {
+            for (int i = 0; i < 5_000; i++) {
+                String subject = (i % 3 == 0 ? "mjt " : "other ") + i;
+                (i % 3 == 0 ? expectedMjt : expectedInbox).add(subject);
+                results.add(pipeline.submit("Nikolay", metadata(subject), "body"));
+            }
+        }
+
+        for (CompletableFuture<DeliveryResult> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS).isDelivered(), "Every mail was expected to be delivered");
+        }
+        assertIterableEquals(expectedMjt,
+                outlook.getMailsFromFolder("Nikolay", "/inbox/mjt").stream().map(Mail::subject).toList(),
+                "Mails were expected in submission order inside the rule's folder");
+        assertIterableEquals(expectedInbox,
+                outlook.getMailsFromFolder("Nikolay", "/inbox").stream().map(Mail::subject).toList(),
+                "Mails were expected in submission order inside /inbox");
+    }
+
+    @Test
+    void testPipelineReportsFailuresAndStats() throws Exception {
+        Outlook outlook = new Outlook();
+        outlook.addNewAccount("Nikolay", "niki@abv.bg");
+
+        IngestionPipeline pipeline = new IngestionPipeline(outlook, 1, 1, 1, 4);
+        CompletableFuture<DeliveryResult> missing = pipeline.submit("Rosi", metadata("hi"), "body");
+        CompletableFuture<DeliveryResult> delivered = pipeline.submit("Nikolay", metadata("hi"), "body");
+        pipeline.close();
+
+        assertFalse(missing.get().isDelivered(), "Mail for a missing account was expected to fail");
+        assertTrue(missing.get().error() instanceof AccountNotFoundException,
+                "AccountNotFoundException was expected as the failure of a missing account");
+        assertEquals(DeliveryResult.delivered("/inbox"), delivered.get(), "Mail was expected in /inbox");
+
+        List<IngestionPipeline.StageStats> stats = pipeline.getStats();
+        assertEquals(2, stats.get(0).processed(), "Both mails were expected to be parsed");
+        assertEquals(1, stats.get(1).processed(), "Only the valid mail was expected to be classified");
+        assertEquals(2, stats.get(2).processed(), "Both mails were expected to reach the store stage");
+        assertThrows(IllegalStateException.class, () -> pipeline.submit("Nikolay", metadata("hi"), "body"),
+                "IllegalStateException was expected when submitting to a closed pipeline");
+    }
+}
@@ -0,0 +1,71 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeywordMatcherTest {
+
+    @Test
+    void testScanFindsOverlappingKeywords() {
+        KeywordMatcher matcher = new KeywordMatcher();
+        matcher.addAll(List.of("he", "she", "his", "hers"));
+
+        BitSet found = matcher.scan("ushers");
+
+        assertTrue(found.get(matcher.getKeywordId("he")), "Keyword 'he' was expected to be found");
+        assertTrue(found.get(matcher.getKeywordId("she")), "Keyword 'she' was expected to be found");
+        assertTrue(found.get(matcher.getKeywordId("hers")), "Keyword 'hers' was expected to be found");
+        assertFalse(found.get(matcher.getKeywordId("his")), "Keyword 'his' was not expected to be found");
+    }
+
+    @Test
+    void testIncrementalAddKeepsPreviousKeywords() {
+        KeywordMatcher matcher = new KeywordMatcher();
+        matcher.add("final");
+        matcher.add("cup final");
+        matcher.add("");
+
+        BitSet found = matcher.scan("world cup final");
+
+        assertEquals(3, matcher.size(), "All distinct keywords were expected to be registered");
+        assertTrue(found.get(matcher.getKeywordId("final")), "Earlier keyword was expected to still match");
+        assertTrue(found.get(matcher.getKeywordId("cup final")), "Added keyword was expected to match");
+        assertTrue(found.get(matcher.getKeywordId("")), "Empty keyword is contained in every text");
+    }
+
+    @Test
+    void testScanAgreesWithContains() {
+        Random random = new Random(42);
+        KeywordMatcher matcher = new KeywordMatcher();
+        String[] keywords = new String[200];
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = randomText(random, 1 + random.nextInt(4));
+            matcher.add(keywords[i]);
+        }
+
+        for (int round = 0; round < 100; round++) {
+            String text = randomText(random, 200);
+            BitSet found = matcher.scan(text);
+            for (String keyword : keywords) {
+                assertEquals(text.contains(keyword), found.get(matcher.getKeywordId(keyword)),
+                        "Automaton must report exactly the keywords contained in the text: " + keyword);
+            }
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(3)));
+        }
+
+        return text.toString();
+    }
+}
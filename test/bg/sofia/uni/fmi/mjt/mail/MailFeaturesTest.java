@@ -0,0 +1,39 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MailFeaturesTest {
+
+    private final Mail mail = new Mail(new Account(new String("niki@abv.bg"), "Nikolay"), Set.of("ivan@abv.bg"),
+            "MJT 2022 exam", "The \u00dcnd exam is hard, see you at 9:00!", LocalDateTime.of(2022, 12, 8, 14, 14));
+
+    @Test
+    void testKeywordsMatchExactlyLikeContains() {
+        MailFeatures features = MailFeatures.of(mail);
+        String text = mail.subject() + "|" + mail.body();
+
+        List<String> keywords = List.of("", "M", "x", "exam", "EXAM", "hard, see", "\u00dcnd", "9:00!", "9:01",
+                "2022 exam", "exam is", "Exam", "hardd", text);
+        for (String keyword : keywords) {
+            assertEquals(mail.subject().contains(keyword), features.subjectContains(keyword),
+                    "Subject lookup of '" + keyword + "' must behave like String.contains");
+            assertEquals(mail.subject().contains(keyword) || mail.body().contains(keyword),
+                    features.subjectOrBodyContains(keyword),
+                    "Subject or body lookup of '" + keyword + "' must behave like String.contains");
+        }
+
+        for (int start = 0; start < text.length(); start++) {
+            for (int end = start; end <= text.length(); end++) {
+                String keyword = text.substring(start, end);
+                assertEquals(mail.subject().contains(keyword) || mail.body().contains(keyword),
+                        features.subjectOrBodyContains(keyword), "Every substring of the mail must be found");
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MailIndexTest {
+
+    private static final Account NIKOLAY = new Account("niki@abv.bg", "Nikolay");
+    private static final Account IVAN = new Account("ivan@abv.bg", "Ivan");
+
+    @Test
+    void testPostingListAdvanceAcrossSkipBlocks() {
+        PostingList list = new PostingList();
+        for (int doc = 0; doc < 10_000; doc += 3) {
+            list.add(doc);
+        }
+
+        PostingList.Cursor cursor = list.cursor();
+        assertEquals(0, cursor.nextDoc(), "First document was expected to be read");
+        assertEquals(4_503, cursor.advance(4_502), "Cursor was expected to land on the next stored id");
+        assertEquals(4_503, cursor.advance(100), "Advancing backwards was expected to keep the position");
+        assertEquals(4_506, cursor.nextDoc(), "Next document was expected after the advanced position");
+        assertEquals(PostingList.NO_MORE_DOCS, cursor.advance(20_000), "Cursor was expected to be exhausted");
+        assertTrue(list.sizeInBytes() < 2 * list.size(), "Deltas were expected to take about a byte each");
+    }
+
+    @Test
+    void testSearchCombinesConditions() {
+        MailIndex index = new MailIndex();
+        Mail lab = mail(NIKOLAY, "MJT lab", "Streams and lambdas", LocalDateTime.of(2022, 12, 8, 14, 14));
+        Mail lecture = mail(NIKOLAY, "MJT lecture", "Concurrency", LocalDateTime.of(2022, 12, 15, 14, 14));
+        Mail other = mail(IVAN, "Lab of OOP", "Streams everywhere", LocalDateTime.of(2022, 12, 9, 10, 0));
+        index.addAll(List.of(lab, lecture, other), new Folder());
+
+        assertEquals(List.of(lab, lecture), index.search(SearchQuery.ofTerms("mjt"), null),
+                "Terms were expected to match case-insensitively in the subject");
+        assertEquals(List.of(lab, other), index.search(SearchQuery.ofTerms("Streams", "lab"), null),
+                "All terms were expected to be required in the subject or the body");
+        assertEquals(List.of(other), index.search(new SearchQuery(Set.of("lab"), "ivan@abv.bg", null, null, null,
+                null), null), "Sender was expected to narrow the result");
+        assertEquals(List.of(lab, other), index.search(new SearchQuery(null, null, null,
+                LocalDateTime.of(2022, 12, 8, 0, 0), LocalDateTime.of(2022, 12, 9, 23, 59), null), null),
+                "Date range was expected to be inclusive");
+        assertEquals(List.of(), index.search(SearchQuery.ofTerms("missing"), null),
+                "Unknown term was expected to match nothing");
+        assertEquals(List.of(), index.search(SearchQuery.ofTerms("!!!"), null),
+                "Term without word characters was expected to match nothing");
+    }
+
+    @Test
+    void testSearchIntersectsLongLists() {
+        MailIndex index = new MailIndex();
+        Folder inbox = new Folder();
+        List<Mail> expected = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            String subject = (i % 2 == 0 ? "even " : "odd ") + (i % 7 == 0 ? "seventh" : "plain");
+            Mail mail = mail(NIKOLAY, subject, "body " + i, null);
+            index.add(mail, inbox);
+            if (i % 14 == 0) {
+                expected.add(mail);
+            }
+        }
+
+        assertEquals(expected, index.search(SearchQuery.ofTerms("even", "seventh"), null),
+                "Intersection was expected to find every common document in order");
+    }
+
+    @Test
+    void testRemoveFoldersDropsTheirDocuments() {
+        MailIndex index = new MailIndex();
+        Folder kept = new Folder();
+        Folder deleted = new Folder();
+        List<Mail> old = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            old.add(mail(NIKOLAY, "Old report " + i, "body", LocalDateTime.of(2021, 1, 1, 0, 0).plusDays(i)));
+        }
+        Mail fresh = mail(IVAN, "Fresh report", "body", LocalDateTime.of(2022, 12, 8, 14, 14));
+        deleted.addAll(old);
+        kept.add(fresh);
+        index.addAll(old.subList(0, 50), deleted);
+        index.add(fresh, kept);
+        index.addAll(old.subList(50, 100), deleted);
+
+        index.removeFolders(List.of(deleted));
+
+        assertEquals(1, index.size(), "Documents of removed folders were expected to be dropped");
+        assertEquals(List.of(fresh), index.search(SearchQuery.ofTerms("report"), null),
+                "Only the remaining mail was expected to be found by words");
+        assertEquals(List.of(fresh), index.search(new SearchQuery(null, null, null,
+                LocalDateTime.of(2020, 1, 1, 0, 0), null, null), null), "Only the remaining mail was expected by date");
+        index.move(fresh, kept, deleted);
+        assertEquals(List.of(fresh), index.search(SearchQuery.ofTerms("fresh"), deleted),
+                "The remaining mail was expected to keep working after the index was rebuilt");
+    }
+
+    @Test
+    void testMovedMailIsFoundInNewFolder() {
+        Outlook outlook = new Outlook();
+        outlook.addNewAccount("Ivan", "ivan@abv.bg");
+        outlook.createFolder("Ivan", "/inbox/mjt");
+        outlook.receiveMail("Ivan", "sender: niki@abv.bg" + System.lineSeparator() + "subject: MJT homework",
+                "Deadline tomorrow");
+        outlook.addRule("Ivan", "/inbox/mjt", "subject-includes: MJT", 1);
+
+        SearchQuery inInbox = new SearchQuery(Set.of("deadline"), null, null, null, null, "/inbox");
+        SearchQuery inMjt = new SearchQuery(Set.of("deadline"), null, null, null, null, "/inbox/mjt");
+        assertEquals(List.of(), outlook.search("Ivan", inInbox), "Moved mail was not expected in /inbox");
+        assertEquals(1, outlook.search("Ivan", inMjt).size(), "Moved mail was expected in its new folder");
+    }
+
+    private static Mail mail(Account sender, String subject, String body, LocalDateTime received) {
+        return new Mail(sender, Set.of("ivan@abv.bg"), subject, body, received);
+    }
+}
@@ -0,0 +1,77 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MailMetadataParserTest {
+
+    private final AccountRegistry accounts = new AccountRegistry();
+    private final MailMetadataParser parser = new MailMetadataParser(accounts);
+
+    @Test
+    void testParseAllFields() {
+        accounts.register("Nikolay", "niki@abv.bg");
+        String mailMetadata = "sender: niki@abv.bg" + System.lineSeparator() +
+                "subject: Hello, MJT!" + System.lineSeparator() +
+                "recipients: pesho@gmail.com, gosho@gmail.com," + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+
+        Mail expected = new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of("pesho@gmail.com", "gosho@gmail.com"),
+                "Hello, MJT!", "body", LocalDateTime.of(2022, 12, 8, 14, 14));
+
+        assertEquals(expected, parser.parse(mailMetadata, "body"), "All metadata fields were expected to be parsed");
+    }
+
+    @Test
+    void testParseAnyOrderAndLineSeparators() {
+        String mailMetadata =
+                "received: 2022-12-08 14:14\r\nrecipients: ivan@abv.bg\rsubject: Re: exam?\nsender: x@y.bg";
+
+        Mail mail = parser.parse(mailMetadata, "body");
+
+        assertEquals("Re: exam?", mail.subject(), "Subject was expected to keep its own separators");
+        assertEquals(Set.of("ivan@abv.bg"), mail.recipients(), "Recipients were expected to be parsed");
+        assertEquals(new Account("x@y.bg", null), mail.sender(), "Unknown sender was expected to have no name");
+        assertEquals(LocalDateTime.of(2022, 12, 8, 14, 14), mail.received(), "Received time was expected to be parsed");
+    }
+
+    @Test
+    void testParseMissingFields() {
+        Mail mail = parser.parse("subject: Hello", "body");
+
+        assertEquals("", mail.sender().emailAddress(), "Missing sender was expected to be empty");
+        assertEquals(Set.of(), mail.recipients(), "Missing recipients were expected to be empty");
+        assertNull(mail.received(), "Missing received time was expected to be null");
+    }
+
+    @Test
+    void testParseDateTimeInvalid() {
+        assertThrows(DateTimeParseException.class, () -> MailMetadataParser.parseDateTime("2022-12-08T14:14"),
+                "DateTimeParseException was expected for a time in another format");
+        assertThrows(DateTimeParseException.class, () -> MailMetadataParser.parseDateTime("2022-1a-08 14:14"),
+                "DateTimeParseException was expected for a time with non-digit fields");
+        assertThrows(DateTimeParseException.class, () -> MailMetadataParser.parseDateTime("2022-13-01 14:14"),
+                "DateTimeParseException was expected for a month out of range");
+        assertThrows(DateTimeParseException.class, () -> MailMetadataParser.parseDateTime("2022-01-32 14:14"),
+                "DateTimeParseException was expected for a day out of range");
+        assertThrows(DateTimeParseException.class, () -> MailMetadataParser.parseDateTime("2022-01-01 14:60"),
+                "DateTimeParseException was expected for a minute out of range");
+    }
+
+    @Test
+    void testParseDateTimeResolvesLikeFormatter() {
+        assertEquals(LocalDateTime.of(2022, 2, 28, 14, 14), MailMetadataParser.parseDateTime("2022-02-30 14:14"),
+                "Day past the end of the month was expected to resolve to the last day");
+        assertEquals(LocalDateTime.of(2024, 2, 29, 14, 14), MailMetadataParser.parseDateTime("2024-02-29 14:14"),
+                "Leap day was expected to be parsed");
+        assertEquals(LocalDateTime.of(2022, 1, 2, 0, 0), MailMetadataParser.parseDateTime("2022-01-01 24:00"),
+                "Midnight at the end of the day was expected to roll over to the next day");
+    }
+}
@@ -0,0 +1,117 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutlookConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ACCOUNTS = 16;
+    private static final int MAILS_PER_THREAD = 2_000;
+
+    private static String metadata(String sender, String subject, String recipients) {
+        return "sender: " + sender + System.lineSeparator() +
+                "subject: " + subject + System.lineSeparator() +
+                "recipients: " + recipients + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+    }
+
+    @Test
+    void testConcurrentReceiveSendAndRead() throws Exception {
+        Outlook outlook = new Outlook();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            outlook.addNewAccount("user" + i, "user" + i + "@abv.bg");
+            outlook.createFolder("user" + i, "/inbox/mjt");
+            outlook.addRule("user" + i, "/inbox/mjt", "subject-includes: mjt", 1);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Collection<Throwable> readerErrors = new ConcurrentLinkedQueue<>();
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < MAILS_PER_THREAD; i++) {
+                    String account = "user" + (thread * 31 + i) % ACCOUNTS;
+                    String subject = (i % 2 == 0 ? "mjt " : "other ") + thread + "-" + i;
+                    if (i % 10 == 0) {
+                        String to = "user" + (i % ACCOUNTS) + "@abv.bg, user" + ((i + 5) % ACCOUNTS) + "@abv.bg";
+                        outlook.sendMail(account, metadata("x@y.bg", subject, to), "body");
+                    } else {
+                        outlook.receiveMail(account, metadata("x@y.bg", subject, "a@b.bg"), "body");
+                    }
+                }
+                return null;
+            }));
+        }
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            while (writing.get()) {
+                try {
+                    for (int i = 0; i < ACCOUNTS; i++) {
+                        for (Mail mail : outlook.getMailsFromFolder("user" + i, "/inbox/mjt")) {
+                            assertTrue(mail.subject().contains("mjt"), "Only matching mails belong to /inbox/mjt");
+                        }
+                    }
+                } catch (Throwable e) {
+                    readerErrors.add(e);
+                }
+            }
+            return null;
+        });
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        reader.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        int expectedReceived = 0;
+        int expectedSent = 0;
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < MAILS_PER_THREAD; i++) {
+                boolean send = i % 10 == 0;
+                expectedSent += send ? 1 : 0;
+                expectedReceived += send ? 2 : 1;
+            }
+        }
+
+        int received = 0;
+        int sent = 0;
+        Set<String> subjects = new HashSet<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            for (String folder : List.of("/inbox", "/inbox/mjt")) {
+                Collection<Mail> mails = outlook.getMailsFromFolder("user" + i, folder);
+                received += mails.size();
+                mails.forEach(mail -> subjects.add(mail.subject()));
+            }
+            sent += outlook.getMailsFromFolder("user" + i, "/sent").size();
+        }
+
+        assertTrue(readerErrors.isEmpty(), "Readers were not expected to fail: " + readerErrors);
+        assertEquals(expectedReceived, received, "Every delivered mail was expected to be stored exactly once");
+        assertEquals(expectedSent, sent, "Every sent mail was expected in its sender's /sent folder");
+        assertEquals(THREADS * MAILS_PER_THREAD, subjects.size(), "No mail was expected to be lost");
+    }
+}
@@ -3,20 +3,34 @@ package bg.sofia.uni.fmi.mjt.mail;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderInUseException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.InvalidPathException;
+import bg.sofia.uni.fmi.mjt.mail.storage.FsyncPolicy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -24,6 +38,9 @@ public class OutlookTest {
     Outlook outlook = new Outlook();
     Inbox inboxMock = Mockito.mock(Inbox.class);
 
+    @TempDir
+    Path directory;
+
     @BeforeEach
     void setTestData() {
         outlook.addNewAccount("Nikolay", "niki@abv.bg");
@@ -201,6 +218,27 @@ public class OutlookTest {
                 "Error: Conflict rules mustn't be added");
     }
 
+    @Test
+    void testAddRuleKeepsDifferentRulesOfSamePriority() {
+        outlook.createFolder("Nikolay", "/inbox/documents");
+        outlook.createFolder("Nikolay", "/inbox/sport");
+        outlook.addRule("Nikolay", "/inbox/documents", "subject-includes: MJT", 2);
+        outlook.addRule("Nikolay", "/inbox/sport", "subject-includes: football", 2);
+        outlook.addRule("Nikolay", "/inbox/sport", "subject-includes: football", 2);
+
+        assertEquals(2, outlook.getAllRules("Nikolay").size(),
+                "Different rules of the same priority were expected to be kept, an equal one skipped");
+
+        String mailMetadata = "sender: gosho@abv.bg" + System.lineSeparator() +
+                "subject: football final" + System.lineSeparator() +
+                "recipients: niki@abv.bg" + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+        outlook.receiveMail("Nikolay", mailMetadata, "Everyone is watching");
+
+        assertEquals(1, outlook.getReceived("Nikolay").getMailsFromFolder("/inbox/sport").size(),
+                "Mail was expected to be moved by the second rule of the same priority");
+    }
+
     @Test
     void testAddRuleAndMailChangeFolder() {
         String mailMetadata = "sender: gosho@abv.bg" + System.lineSeparator() +
@@ -228,6 +266,29 @@ public class OutlookTest {
                 "After moving in other folder mail should be deleted from default one");
     }
 
+    @Test
+    void testGetRuleProfilesShowsRulesThatNeverMatch() {
+        outlook.createFolder("Nikolay", "/inbox/documents");
+        outlook.createFolder("Nikolay", "/inbox/sport");
+        outlook.addRule("Nikolay", "/inbox/documents", "subject-includes: MJT", 2);
+        outlook.addRule("Nikolay", "/inbox/sport", "subject-includes: football", 3);
+
+        String mailMetadata = "sender: gosho@abv.bg" + System.lineSeparator() +
+                "subject: Hello, MJT!" + System.lineSeparator() +
+                "recipients: pesho@gmail.com, niki@abv.bg" + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+        outlook.receiveMail("Nikolay", mailMetadata, "MJT course is the best course in FMI!");
+
+        List<RuleProfile> profiles = outlook.getRuleProfiles("Nikolay");
+        assertEquals(2, profiles.size(), "A profile was expected for every rule of the account");
+        for (RuleProfile profile : profiles) {
+            boolean documents = profile.rule().getFolderPath().equals("/inbox/documents");
+            assertEquals(documents ? 1 : 0, profile.matches(), "Only the documents rule was expected to match");
+            assertEquals(!documents, profile.neverMatched(), "The sport rule was expected to never match");
+        }
+        assertTrue(outlook.getRuleProfiles("Gosho").isEmpty(), "An account without rules has no profiles");
+    }
+
     @Test
     void testReceiveMailNullName() {
         String mailMetadata = "sender: niki@abv.bg" + System.lineSeparator() +
@@ -536,4 +597,189 @@ public class OutlookTest {
         assertIterableEquals(list, outlook.getReceived("Gosho").getMailsFromFolder("/inbox/documents"),
                 "Error: When sending mail, automatically receiving for recipients is expected");
     }
+
+    @Test
+    void testReceiveMailsAccountNotFound() {
+        assertThrows(AccountNotFoundException.class, () -> outlook.receiveMails("Rosi", List.of()),
+                "AccountNotFoundException was expected when there is not account with current name");
+    }
+
+    @Test
+    void testReceiveMailsClassifiesBatchAndReportsFailures() {
+        String matching = "sender: gosho@abv.bg" + System.lineSeparator() +
+                "subject: Hello, MJT!" + System.lineSeparator() +
+                "recipients: niki@abv.bg" + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+        String other = "sender: gosho@abv.bg" + System.lineSeparator() +
+                "subject: Lunch?" + System.lineSeparator() +
+                "recipients: niki@abv.bg" + System.lineSeparator() +
+                "received: 2022-12-08 14:15";
+
+        outlook.createFolder("Nikolay", "/inbox/documents");
+        outlook.addRule("Nikolay", "/inbox/documents", "subject-includes: MJT", 2);
+
+        List<DeliveryResult> results = outlook.receiveMails("Nikolay", List.of(
+                new RawMail(matching, "first"), new RawMail(other, " "), new RawMail(other, "second")));
+
+        assertEquals("/inbox/documents", results.get(0).folderPath(), "Matching mail was expected in rule's folder");
+        assertFalse(results.get(1).isDelivered(), "Mail with blank content was expected to fail");
+        assertTrue(results.get(1).error() instanceof IllegalArgumentException,
+                "IllegalArgumentException was expected as the failure of a blank mail");
+        assertEquals("/inbox", results.get(2).folderPath(), "Not matching mail was expected in default folder");
+        assertIterableEquals(List.of(outlook.parseMailMetadata(matching, "first")),
+                outlook.getMailsFromFolder("Nikolay", "/inbox/documents"), "Batch mail was expected to be stored");
+        assertIterableEquals(List.of(outlook.parseMailMetadata(other, "second")),
+                outlook.getMailsFromFolder("Nikolay", "/inbox"), "Failed mail must not be stored");
+    }
+
+    @Test
+    void testSendMailDeliversSharedMailToRecipients() {
+        outlook.addNewAccount("Ivan", "ivan@abv.bg");
+        String mailMetadata = "subject: Hello, MJT!" + System.lineSeparator() +
+                "recipients: gosho@abv.bg, ivan@abv.bg, pesho@gmail.com" + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+
+        outlook.sendMail("Nikolay", mailMetadata, "MJT course is the best course in FMI!");
+
+        Mail sent = outlook.getMailsFromFolder("Nikolay", "/sent").iterator().next();
+        assertSame(sent, outlook.getMailsFromFolder("Gosho", "/inbox").iterator().next(),
+                "The sent mail was expected to be delivered without being parsed again");
+        assertSame(sent, outlook.getMailsFromFolder("Ivan", "/inbox").iterator().next(),
+                "Every recipient was expected to share the same mail instance");
+        assertThrows(UnsupportedOperationException.class, () -> sent.recipients().add("x@abv.bg"),
+                "Shared mail's recipients were expected to be immutable");
+    }
+
+    @Test
+    void testSendMailAsyncInvalidConcurrency() {
+        assertThrows(IllegalArgumentException.class, () -> outlook.sendMailAsync("Nikolay", "subject: Hi", "body", 0),
+                "IllegalArgumentException was expected when concurrency is not positive");
+    }
+
+    @Test
+    void testSendMailAsyncReportsPerRecipientResults() throws Exception {
+        String mailMetadata = "subject: Hello, MJT!" + System.lineSeparator() +
+                "recipients: gosho@abv.bg, pesho@gmail.com" + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+        outlook.createFolder("Gosho", "/inbox/documents");
+        outlook.addRule("Gosho", "/inbox/documents", "subject-includes: MJT", 2);
+
+        CompletableFuture<Map<String, DeliveryResult>> handle =
+                outlook.sendMailAsync("Nikolay", mailMetadata, "MJT course is the best course in FMI!", 2);
+
+        assertEquals(1, outlook.getMailsFromFolder("Nikolay", "/sent").size(),
+                "Sent copy was expected to be stored before sendMailAsync returns");
+
+        Map<String, DeliveryResult> results = handle.get(10, TimeUnit.SECONDS);
+        assertEquals(DeliveryResult.delivered("/inbox/documents"), results.get("gosho@abv.bg"),
+                "Local recipient was expected to receive the mail in its rule's folder");
+        assertEquals(DeliveryResult.skipped(), results.get("pesho@gmail.com"),
+                "Recipient without account was expected to be skipped");
+        assertEquals(1, outlook.getMailsFromFolder("Gosho", "/inbox/documents").size(),
+                "Delivered mail was expected to be stored");
+    }
+
+    @Test
+    void testCloseShutsDownOwnDeliveryExecutor() {
+        outlook.close();
+
+        assertThrows(IllegalStateException.class,
+                () -> outlook.sendMailAsync("Nikolay", "recipients: gosho@abv.bg", "body", 1),
+                "IllegalStateException was expected after the client's own executor is shut down");
+        assertEquals(0, outlook.getMailsFromFolder("Nikolay", "/sent").size(),
+                "Closed client was not expected to store a sent copy");
+    }
+
+    @Test
+    void testSendMailAsyncFailsRecipientsWhenDeliveryIsRejected() throws Exception {
+        ExecutorService executor = Mockito.mock(ExecutorService.class);
+        Mockito.doThrow(new RejectedExecutionException()).when(executor).execute(Mockito.any());
+        Outlook rejecting = new Outlook(executor);
+        rejecting.addNewAccount("Nikolay", "niki@abv.bg");
+        rejecting.addNewAccount("Gosho", "gosho@abv.bg");
+
+        Map<String, DeliveryResult> results =
+                rejecting.sendMailAsync("Nikolay", "recipients: gosho@abv.bg", "body", 1).get(10, TimeUnit.SECONDS);
+
+        assertEquals(DeliveryResult.Status.FAILED, results.get("gosho@abv.bg").status(),
+                "Recipient was expected to fail when its delivery is rejected");
+        assertTrue(results.get("gosho@abv.bg").error() instanceof RejectedExecutionException,
+                "The rejection was expected as the recipient's error");
+    }
+
+    @Test
+    void testCloseLeavesCallerDeliveryExecutorRunning() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            new Outlook(executor).close();
+
+            assertFalse(executor.isShutdown(), "Executor passed by the caller was expected to stay running");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testMoveOrDeleteFolderWithRuleTargetBelowIt() {
+        outlook.createFolder("Nikolay", "/inbox/work");
+        outlook.createFolder("Nikolay", "/inbox/work/mjt");
+        outlook.createFolder("Nikolay", "/inbox/archive");
+        outlook.addRule("Nikolay", "/inbox/work/mjt", "subject-includes: MJT", 1);
+
+        assertThrows(FolderInUseException.class, () -> outlook.moveFolder("Nikolay", "/inbox/work", "/inbox/archive"),
+                "Folder holding a rule's target was not expected to be moved");
+        assertThrows(FolderInUseException.class, () -> outlook.deleteFolder("Nikolay", "/inbox/work/mjt"),
+                "Rule's target was not expected to be deleted");
+
+        outlook.moveFolder("Nikolay", "/inbox/archive", "/inbox/work");
+        assertEquals(List.of("/inbox/work", "/inbox/work/archive", "/inbox/work/mjt"),
+                outlook.listFolders("Nikolay", "/inbox/work"), "Folder without rules was expected to be moved");
+    }
+
+    @Test
+    void testAccountStatsRollUpReceivedAndSentMails() {
+        outlook.createFolder("Gosho", "/inbox/mjt");
+        String mailMetadata = "subject: MJT exam" + System.lineSeparator() +
+                "recipients: gosho@abv.bg" + System.lineSeparator() +
+                "received: 2022-12-08 14:14";
+        outlook.sendMail("Nikolay", mailMetadata, "Good luck");
+        outlook.receiveMail("Gosho", "subject: Other" + System.lineSeparator() + "received: 2022-12-01 10:00",
+                "Lunch?");
+        outlook.addRule("Gosho", "/inbox/mjt", "subject-includes: MJT", 1);
+
+        Mail exam = outlook.getMailsFromFolder("Gosho", "/inbox/mjt").iterator().next();
+        assertEquals(new FolderStats(1, Folder.sizeOf(exam), exam.received()),
+                outlook.getFolderStats("Gosho", "/inbox/mjt"), "Moved mail was expected in its folder's stats");
+        FolderStats gosho = outlook.getAccountStats("Gosho");
+        assertEquals(2, gosho.mailCount(), "Reclassification was not expected to change the account's count");
+        assertEquals(exam.received(), gosho.newestReceived(), "Newest mail of the account was expected");
+        assertEquals(outlook.getFolderStats("Nikolay", "/sent"), outlook.getAccountStats("Nikolay"),
+                "Sent mails were expected in the sender's account stats");
+
+        outlook.createFolder("Gosho", "/inbox/archive");
+        outlook.addMailToAccount("Gosho", "/inbox/archive", new Mail(new Account("niki@abv.bg", "Nikolay"),
+                Set.of(), "Archived", "Old news", LocalDateTime.of(2023, 1, 1, 10, 0)));
+        outlook.deleteFolder("Gosho", "/inbox/archive");
+        assertEquals(2, outlook.getAccountStats("Gosho").mailCount(), "Deleted mails were expected to be subtracted");
+        assertEquals(exam.received(), outlook.getAccountStats("Gosho").newestReceived(),
+                "Newest time was expected to fall back to the remaining mails");
+    }
+
+    @Test
+    void testFailedStoreLeavesNoLogRecord() {
+        Path file = directory.resolve("outlook.log");
+        Mail mail = new Mail(new Account("gosho@abv.bg", "Gosho"), Set.of("niki@abv.bg"), "Hello", "MJT",
+                LocalDateTime.of(2022, 12, 8, 14, 14));
+        try (Outlook durable = new Outlook(file, FsyncPolicy.NONE)) {
+            durable.addNewAccount("Niki", "niki@abv.bg");
+            assertThrows(FolderNotFoundException.class, () -> durable.addMailToAccount("Niki", "/inbox/missing", mail),
+                    "FolderNotFoundException was expected when storing into a missing folder");
+            durable.addMailToAccount("Niki", "/inbox", mail);
+        }
+
+        try (Outlook reopened = new Outlook(file, FsyncPolicy.NONE)) {
+            assertEquals(List.of(mail), List.copyOf(reopened.getMailsFromFolder("Niki", "/inbox")),
+                    "Only the stored mail was expected to be replayed");
+        }
+    }
 }
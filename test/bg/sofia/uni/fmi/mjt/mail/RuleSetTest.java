@@ -0,0 +1,68 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RuleSetTest {
+
+    private static Rule rule(String folder, int priority, String definition) {
+        Rule rule = new Rule(folder, priority);
+        rule.parseRuleDefinition(definition);
+        return rule;
+    }
+
+    private static MailFeatures features(String sender, String subject) {
+        return MailFeatures.of(new Mail(new Account(sender, "Sender"), Set.of("ivan@abv.bg"), subject, "body",
+                LocalDateTime.now()));
+    }
+
+    @Test
+    void testAddKeepsRulesOfSamePriorityInInsertionOrder() {
+        RuleSet rules = new RuleSet();
+        Rule exams = rule("/inbox/exams", 3, "subject-includes: exam");
+        Rule mjt = rule("/inbox/mjt", 3, "subject-includes: mjt");
+        Rule urgent = rule("/inbox/urgent", 1, "subject-includes: urgent");
+
+        assertTrue(rules.add(exams), "First rule of a priority was expected to be added");
+        assertTrue(rules.add(mjt), "Different rule of the same priority was expected to be added");
+        assertTrue(rules.add(urgent), "Rule of another priority was expected to be added");
+        assertFalse(rules.add(rule("/inbox/mjt", 3, "subject-includes: mjt")), "Equal rule was expected to be skipped");
+
+        assertEquals(3, rules.size(), "Every different rule was expected to be kept");
+        assertIterableEquals(List.of(urgent, exams, mjt), rules,
+                "Rules were expected by priority and then in insertion order");
+        assertIterableEquals(List.of(exams, mjt), rules.getLevel(3), "Level was expected in insertion order");
+        assertThrows(IllegalArgumentException.class, () -> rules.add(rule("/inbox/mjt", 11, "subject-includes: a")),
+                "Priority outside [1, 10] was expected to be rejected");
+    }
+
+    @Test
+    void testFindFirstMatchPrefersPriorityThenInsertionOrder() {
+        RuleSet rules = new RuleSet(AddressRuleIndex::new);
+        Rule anyMjt = rule("/inbox/mjt", 2, "subject-includes: mjt");
+        Rule fromNiki = rule("/inbox/niki", 2, "from: niki@abv.bg" + System.lineSeparator() + "subject-includes: mjt");
+        Rule urgent = rule("/inbox/urgent", 1, "subject-includes: urgent");
+        rules.add(anyMjt);
+        rules.add(fromNiki);
+        rules.add(urgent);
+
+        MailFeatures mjt = features("niki@abv.bg", "mjt exam");
+        assertEquals(anyMjt, rules.findFirstMatch(mjt, mjt), "Rule added first was expected to win a tie");
+
+        MailFeatures urgentMjt = features("niki@abv.bg", "urgent mjt exam");
+        assertEquals(urgent, rules.findFirstMatch(urgentMjt, urgentMjt), "Higher priority was expected to win");
+
+        MailFeatures other = features("niki@abv.bg", "football");
+        assertNull(rules.findFirstMatch(other, other), "No rule was expected to match");
+    }
+}
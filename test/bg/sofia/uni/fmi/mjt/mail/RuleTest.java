@@ -10,6 +10,8 @@ import java.util.Set;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -110,6 +112,27 @@ public class RuleTest {
 
     }
 
+    @Test
+    void testCheckIfMailMatchesRuleCountsEvaluationsAndMatches() {
+        Mail matching = new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of("ivan@abv.bg"), "mjt exam",
+                "see you there", LocalDateTime.now());
+        Mail other = new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of("ivan@abv.bg"), "football",
+                "see you there", LocalDateTime.now());
+
+        Rule rule = new Rule("/inbox/important", 2);
+        rule.parseRuleDefinition("subject-includes: mjt");
+        assertNull(rule.getStats().getLastMatched(), "A rule that never matched has no last match time");
+
+        for (int i = 0; i < 100; i++) {
+            rule.checkIfMailMatchesRule(matching);
+            rule.checkIfMailMatchesRule(other);
+        }
+
+        assertEquals(200, rule.getStats().getEvaluations(), "Every evaluation was expected to be counted");
+        assertEquals(100, rule.getStats().getMatches(), "Only matching evaluations were expected to be counted");
+        assertNotNull(rule.getStats().getLastMatched(), "The last match time was expected after a match");
+    }
+
     @Test
     void testCheckIfMailMatchesRuleMissingSubjectIncludes() {
         Set<String> mailRecipients = new HashSet<>();
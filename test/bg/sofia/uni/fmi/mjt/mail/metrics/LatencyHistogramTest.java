@@ -0,0 +1,35 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void testBucketsCoverEveryValueWithinThreePercent() {
+        long[] values = {0, 1, 31, 32, 33, 1_000, 123_456, 10_000_000_000L, Long.MAX_VALUE};
+        for (long value : values) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            assertTrue(highest >= value, "Bucket of " + value + " was expected to contain it");
+            assertTrue(highest - value <= value / 32, "Bucket of " + value + " was expected to be narrow");
+        }
+    }
+
+    @Test
+    void testSnapshotPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        histogram.record(-5);
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(1_001, snapshot.count(), "Every recorded value was expected to be counted");
+        assertEquals(1_000_000, snapshot.maxNanos(), "Exact maximum was expected");
+        assertTrue(Math.abs(snapshot.p50Nanos() - 500_000) <= 500_000 / 32, "Median was expected near 500us");
+        assertTrue(Math.abs(snapshot.p99Nanos() - 990_000) <= 990_000 / 32, "p99 was expected near 990us");
+        assertEquals(LatencySnapshot.EMPTY, new LatencyHistogram().snapshot(), "Empty histogram was expected");
+    }
+}
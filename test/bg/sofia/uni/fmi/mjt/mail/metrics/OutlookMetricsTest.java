@@ -0,0 +1,66 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import bg.sofia.uni.fmi.mjt.mail.InstrumentedMailClient;
+import bg.sofia.uni.fmi.mjt.mail.MailClient;
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.openmbean.TabularData;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutlookMetricsTest {
+
+    @Test
+    void testOperationsAndStagesAreRecorded() {
+        HistogramMetricsRecorder recorder = new HistogramMetricsRecorder();
+        MailClient client = new InstrumentedMailClient(new Outlook(recorder), recorder);
+        client.addNewAccount("Ivan", "ivan@abv.bg");
+        client.createFolder("Ivan", "/inbox/mjt");
+        client.receiveMail("Ivan", "subject: MJT lab", "Streams");
+        client.receiveMail("Ivan", "subject: Other", "Lunch");
+        client.addRule("Ivan", "/inbox/mjt", "subject-includes: MJT", 1);
+        assertThrows(IllegalArgumentException.class, () -> client.receiveMail("Ivan", "", "body"),
+                "Invalid mail was expected to be rejected");
+
+        assertEquals(3, recorder.getSnapshot(Operation.RECEIVE_MAIL).count(),
+                "Failed calls were expected to be timed too");
+        assertEquals(2, recorder.getSnapshot(Operation.PARSE_MAIL_METADATA).count(),
+                "Every parsed mail was expected to be timed");
+        assertEquals(2, recorder.getSnapshot(Operation.PUT_MAIL_IN_FOLDER).count(),
+                "Every stored mail was expected to be timed");
+        assertEquals(1, recorder.getSnapshot(Operation.CHECK_FOR_BETTER_FOLDERS).count(),
+                "Reclassification after the new rule was expected to be timed");
+        assertTrue(recorder.getSnapshot(Operation.ADD_RULE).maxNanos() > 0, "Latency was expected to be recorded");
+        assertEquals(0, recorder.getSnapshot(Operation.SEARCH).count(), "Unused operation was expected empty");
+    }
+
+    @Test
+    void testMetricsAreReadableThroughJmx() throws Exception {
+        HistogramMetricsRecorder recorder = new HistogramMetricsRecorder();
+        MailClient client = new InstrumentedMailClient(new Outlook(recorder), recorder);
+        client.addNewAccount("Ivan", "ivan@abv.bg");
+
+        OutlookMetrics metrics = OutlookMetrics.register(recorder, "jmx-test");
+        try {
+            Map<String, Long> counts = metrics.getCounts();
+            assertEquals(1, counts.get("addNewAccount"), "Registered account was expected to be counted");
+
+            TabularData remote = (TabularData) ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(metrics.getObjectName(), "Counts");
+            assertEquals(Operation.values().length, remote.size(), "Every operation was expected over JMX");
+            TabularData p90 = (TabularData) ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(metrics.getObjectName(), "P90Nanos");
+            assertEquals(Operation.values().length, p90.size(), "p90 was expected over JMX for every operation");
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(metrics.getObjectName()),
+                "MBean was expected to be unregistered");
+    }
+}
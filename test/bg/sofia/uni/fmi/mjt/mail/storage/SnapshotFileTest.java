@@ -0,0 +1,101 @@
+package bg.sofia.uni.fmi.mjt.mail.storage;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.Rule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SnapshotFileTest {
+
+    private static final String METADATA = "sender: %s" + System.lineSeparator() +
+            "subject: %s" + System.lineSeparator() +
+            "recipients: ivan@abv.bg" + System.lineSeparator() +
+            "received: 2022-12-08 14:14";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteAndReadRoundTrip() {
+        Path file = directory.resolve("outlook.snapshot");
+        Account sender = new Account("niki@abv.bg", "Nikolay");
+        Mail first = new Mail(sender, Set.of("ivan@abv.bg"), "MJT", "Lab 1", LocalDateTime.of(2022, 12, 8, 14, 14));
+        Mail second = new Mail(sender, Set.of("ivan@abv.bg"), "MJT", "Lab 2", LocalDateTime.of(2021, 1, 1, 0, 0, 5));
+        Mail undated = new Mail(new Account("", null), Set.of(), "", "Lab 3", null);
+        Map<String, List<Mail>> folders = new LinkedHashMap<>();
+        folders.put("/inbox", List.of(first, undated));
+        folders.put("/inbox/mjt", List.of(second));
+        Rule rule = new Rule("/inbox/mjt", 2);
+        rule.parseRuleDefinition("subject-includes: MJT, Lab" + System.lineSeparator() + "from: niki@abv.bg");
+
+        SnapshotFile.write(file, new OutlookSnapshot(7, List.of(
+                new AccountSnapshot("Ivan", "ivan@abv.bg", folders, List.of(second), List.of(rule)))));
+        OutlookSnapshot loaded = SnapshotFile.read(file);
+
+        assertEquals(7, loaded.logEpoch(), "Log epoch was expected to be kept");
+        AccountSnapshot account = loaded.accounts().get(0);
+        assertEquals("Ivan", account.name(), "Account name was expected to be kept");
+        assertEquals(folders, account.folders(), "Folders and their mails were expected to be kept in order");
+        assertEquals(List.of(second), account.sentMails(), "Sent mails were expected to be kept");
+        assertEquals(List.of(rule), account.rules(), "Parsed rule was expected to be kept");
+        assertSame(account.folders().get("/inbox").get(0).recipients(), account.sentMails().get(0).recipients(),
+                "Equal recipient sets were expected to be loaded once");
+    }
+
+    @Test
+    void testCheckpointThenRecoverFromSnapshotAndLog() {
+        Path file = directory.resolve("outlook.log");
+        Outlook outlook = new Outlook(file, FsyncPolicy.NONE);
+        outlook.addNewAccount("Ivan", "ivan@abv.bg");
+        outlook.createFolder("Ivan", "/inbox/mjt");
+        outlook.receiveMail("Ivan", METADATA.formatted("news@fmi.bg", "MJT news"), "Lab 1");
+        outlook.addRule("Ivan", "/inbox/mjt", "subject-includes: MJT", 2);
+        outlook.checkpoint();
+        outlook.receiveMail("Ivan", METADATA.formatted("news@fmi.bg", "MJT again"), "Lab 2");
+        outlook.receiveMail("Ivan", METADATA.formatted("news@fmi.bg", "Other"), "Lab 3");
+        outlook.close();
+
+        try (Outlook recovered = new Outlook(file, FsyncPolicy.NONE)) {
+            assertFoldersEqual(outlook, recovered);
+        }
+    }
+
+    @Test
+    void testLogAlreadyInSnapshotIsNotReplayed() throws IOException {
+        Path file = directory.resolve("outlook.log");
+        Outlook outlook = new Outlook(file, FsyncPolicy.NONE);
+        outlook.addNewAccount("Ivan", "ivan@abv.bg");
+        outlook.createFolder("Ivan", "/inbox/mjt");
+        outlook.receiveMail("Ivan", METADATA.formatted("news@fmi.bg", "MJT news"), "Lab 1");
+        byte[] logBeforeCheckpoint = Files.readAllBytes(file);
+        outlook.checkpoint();
+        outlook.close();
+        Files.write(file, logBeforeCheckpoint);     // As if the checkpoint crashed before emptying the log
+
+        try (Outlook recovered = new Outlook(file, FsyncPolicy.NONE)) {
+            assertFoldersEqual(outlook, recovered);
+        }
+    }
+
+    private static void assertFoldersEqual(Outlook expected, Outlook actual) {
+        for (String path : List.of("/inbox", "/inbox/mjt")) {
+            assertIterableEquals(expected.getMailsFromFolder("Ivan", path), actual.getMailsFromFolder("Ivan", path),
+                    "Folder " + path + " was expected to match");
+        }
+    }
+}
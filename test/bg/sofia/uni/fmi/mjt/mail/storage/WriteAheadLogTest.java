@@ -0,0 +1,183 @@
+package bg.sofia.uni.fmi.mjt.mail.storage;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.StorageException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class WriteAheadLogTest {
+
+    private static final String METADATA = "sender: %s" + System.lineSeparator() +
+            "subject: %s" + System.lineSeparator() +
+            "recipients: %s" + System.lineSeparator() +
+            "received: 2022-12-08 14:14";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecoverReturnsRecordsInOrder() {
+        Path file = directory.resolve("outlook.log");
+        Mail mail = new Mail(new Account("niki@abv.bg", "Nikolay"), Set.of("ivan@abv.bg"), "Hello", "MJT",
+                LocalDateTime.of(2022, 12, 8, 14, 14));
+        List<LogRecord> records = List.of(
+                new LogRecord.AddAccount("Nikolay", "niki@abv.bg"),
+                new LogRecord.CreateFolder("Nikolay", "/inbox/mjt"),
+                new LogRecord.AddRule("Nikolay", "/inbox/mjt", "subject-includes: mjt", 3),
+                new LogRecord.StoreMail("Nikolay", "/inbox/mjt", mail),
+                new LogRecord.SentMail("Nikolay", new Mail(new Account("", null), Set.of(), "", "body", null)));
+
+        try (WriteAheadLog log = WriteAheadLog.open(file, FsyncPolicy.ALWAYS)) {
+            records.forEach(log::append);
+            log.sync();
+        }
+
+        assertIterableEquals(records, WriteAheadLog.recover(file).records(),
+                "Recovered records were expected to match");
+    }
+
+    @Test
+    void testRecoverCutsTornTail() throws IOException {
+        Path file = directory.resolve("outlook.log");
+        long firstRecordSize;
+        try (WriteAheadLog log = WriteAheadLog.open(file, FsyncPolicy.NONE)) {
+            log.append(new LogRecord.AddAccount("Nikolay", "niki@abv.bg"));
+            log.sync();
+            firstRecordSize = log.size();
+            log.append(new LogRecord.AddAccount("Ivan", "ivan@abv.bg"));
+        }
+        long fullSize = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(fullSize - 3);                 // The second record was only partially written
+        }
+
+        List<LogRecord> recovered = WriteAheadLog.recover(file).records();
+
+        assertEquals(List.of(new LogRecord.AddAccount("Nikolay", "niki@abv.bg")), recovered,
+                "Only the complete record was expected to be recovered");
+        assertEquals(firstRecordSize, Files.size(file), "The torn record was expected to be cut off");
+    }
+
+    @Test
+    void testRecoverStopsAtCorruptedRecord() throws IOException {
+        Path file = directory.resolve("outlook.log");
+        try (WriteAheadLog log = WriteAheadLog.open(file, FsyncPolicy.NONE)) {
+            log.append(new LogRecord.AddAccount("Nikolay", "niki@abv.bg"));
+            log.append(new LogRecord.AddAccount("Ivan", "ivan@abv.bg"));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        assertEquals(1, WriteAheadLog.recover(file).records().size(),
+                "Recovery was expected to stop at the bad checksum");
+    }
+
+    @Test
+    void testFailedWriteFailsPendingAndLaterSyncs() throws IOException {
+        Path file = directory.resolve("outlook.log");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try (WriteAheadLog log = WriteAheadLog.open(channel, FsyncPolicy.ALWAYS, 10)) {
+            log.append(new LogRecord.AddAccount("Nikolay", "niki@abv.bg"));
+            log.sync();
+
+            long lost = log.append(new LogRecord.AddAccount("Ivan", "ivan@abv.bg"));
+            channel.close();                                // Every write from now on fails
+
+            assertThrows(StorageException.class, () -> log.sync(lost), "The failed write was expected to be reported");
+            assertThrows(StorageException.class, () -> log.sync(lost), "A failed record must never be acknowledged");
+            assertThrows(StorageException.class, () -> log.append(new LogRecord.AddAccount("Gosho", "gosho@abv.bg")),
+                    "A failed log was expected to accept no more records");
+        }
+
+        assertEquals(List.of(new LogRecord.AddAccount("Nikolay", "niki@abv.bg")), WriteAheadLog.recover(file).records(),
+                "Only the record synced before the failure was expected in the log");
+    }
+
+    @Test
+    void testRecoverRejectsRecordThatCanNotBeDecoded() throws IOException {
+        Path file = directory.resolve("outlook.log");
+        try (WriteAheadLog log = WriteAheadLog.open(file, FsyncPolicy.NONE)) {
+            log.append(new LogRecord.AddAccount("Nikolay", "niki@abv.bg"));
+        }
+        byte[] body = {1, 0, 0, 0, 7};                      // An account record whose name is cut short
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        Files.write(file, ByteBuffer.allocate(2 * Integer.BYTES + body.length)
+                .putInt(body.length).putInt((int) crc.getValue()).put(body).array(), StandardOpenOption.APPEND);
+        long size = Files.size(file);
+
+        assertThrows(StorageException.class, () -> WriteAheadLog.recover(file),
+                "A record with a valid checksum that can not be decoded was expected to be reported");
+        assertEquals(size, Files.size(file), "A corrupted log must not be truncated");
+    }
+
+    @Test
+    void testOutlookReplayRebuildsSameFolders() {
+        Path file = directory.resolve("outlook.log");
+        try (Outlook outlook = new Outlook(file, FsyncPolicy.ALWAYS)) {
+            outlook.addNewAccount("Nikolay", "niki@abv.bg");
+            outlook.addNewAccount("Ivan", "ivan@abv.bg");
+            outlook.createFolder("Ivan", "/inbox/mjt");
+            outlook.receiveMail("Ivan", METADATA.formatted("news@fmi.bg", "MJT news", "ivan@abv.bg"), "Lab 1");
+            outlook.receiveMail("Ivan", METADATA.formatted("news@fmi.bg", "Other", "ivan@abv.bg"), "Lab 2");
+            outlook.addRule("Ivan", "/inbox/mjt", "subject-includes: MJT", 2);
+            outlook.sendMail("Nikolay", METADATA.formatted("niki@abv.bg", "MJT homework", "ivan@abv.bg"), "Done");
+
+            try (Outlook recovered = reopen(outlook, file)) {
+                for (String path : List.of("/inbox", "/inbox/mjt")) {
+                    assertIterableEquals(outlook.getMailsFromFolder("Ivan", path),
+                            recovered.getMailsFromFolder("Ivan", path), "Folder " + path + " was expected to match");
+                }
+                assertIterableEquals(outlook.getMailsFromFolder("Nikolay", "/sent"),
+                        recovered.getMailsFromFolder("Nikolay", "/sent"), "Sent mails were expected to match");
+                assertEquals(outlook.getAllAccounts(), recovered.getAllAccounts(), "Accounts were expected to match");
+                assertEquals(1, recovered.getAllRules("Ivan").size(), "Rule was expected to be recovered");
+            }
+        }
+    }
+
+    @Test
+    void testOutlookReplayMovesAndDeletesFolders() {
+        Path file = directory.resolve("outlook.log");
+        try (Outlook outlook = new Outlook(file, FsyncPolicy.ALWAYS)) {
+            outlook.addNewAccount("Ivan", "ivan@abv.bg");
+            outlook.createFolder("Ivan", "/inbox/mjt");
+            outlook.createFolder("Ivan", "/inbox/archive");
+            outlook.createFolder("Ivan", "/inbox/spam");
+            outlook.addRule("Ivan", "/inbox/mjt", "subject-includes: MJT", 2);
+            outlook.receiveMail("Ivan", METADATA.formatted("news@fmi.bg", "MJT news", "ivan@abv.bg"), "Lab 1");
+            outlook.moveFolder("Ivan", "/inbox/spam", "/inbox/archive");
+            outlook.deleteFolder("Ivan", "/inbox/archive");
+
+            try (Outlook recovered = reopen(outlook, file)) {
+                assertEquals(List.of("/inbox", "/inbox/mjt"), recovered.listFolders("Ivan", "/inbox"),
+                        "Moved and deleted folders were expected to be replayed");
+                assertEquals(1, recovered.countMails("Ivan", "/inbox/mjt"), "Mail was expected to be recovered");
+            }
+        }
+    }
+
+    private static Outlook reopen(Outlook outlook, Path file) {
+        outlook.close();
+        return new Outlook(file, FsyncPolicy.NONE);
+    }
+}